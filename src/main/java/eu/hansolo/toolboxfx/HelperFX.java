@@ -19,14 +19,19 @@
 package eu.hansolo.toolboxfx;
 
 import eu.hansolo.toolbox.Helper;
-import eu.hansolo.toolbox.Statistics;
-import eu.hansolo.toolbox.tuples.Pair;
 import eu.hansolo.toolboxfx.geom.Bounds;
 import eu.hansolo.toolboxfx.geom.CardinalDirection;
-import eu.hansolo.toolboxfx.geom.CatmullRom;
+import eu.hansolo.toolboxfx.geom.CatmullRomEvaluator;
+import eu.hansolo.toolboxfx.geom.ControlPointBuffer;
 import eu.hansolo.toolboxfx.geom.CornerRadii;
+import eu.hansolo.toolboxfx.geom.CurveFlattener;
 import eu.hansolo.toolboxfx.geom.Dimension;
+import eu.hansolo.toolboxfx.geom.Downsampler;
+import eu.hansolo.toolboxfx.geom.FlattenedShape;
+import eu.hansolo.toolboxfx.geom.KdTree;
 import eu.hansolo.toolboxfx.geom.Point;
+import eu.hansolo.toolboxfx.geom.PointBuffer;
+import eu.hansolo.toolboxfx.geom.PointHash;
 import eu.hansolo.toolboxfx.geom.Position;
 import eu.hansolo.toolboxfx.geom.QuickHull;
 import eu.hansolo.toolboxfx.geom.Rectangle;
@@ -67,13 +72,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
-import java.util.Set;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
 
@@ -171,26 +174,7 @@ public class HelperFX {
     public static final Point[] subdividePoints(final Point[] points, final int subDevisions) {
         assert points != null;
         assert points.length >= 3;
-        int    noOfPoints = points.length;
-
-        Point[] subdividedPoints = new Point[((noOfPoints - 1) * subDevisions) + 1];
-
-        double increments = 1.0 / (double) subDevisions;
-
-        for (int i = 0 ; i < noOfPoints - 1 ; i++) {
-            Point p0 = i == 0 ? points[i] : points[i - 1];
-            Point p1 = points[i];
-            Point p2 = points[i + 1];
-            Point p3 = (i+2 == noOfPoints) ? points[i + 1] : points[i + 2];
-
-            CatmullRom crs = new CatmullRom(p0, p1, p2, p3);
-
-            for (int j = 0; j <= subDevisions; j++) {
-                subdividedPoints[(i * subDevisions) + j] = crs.q(j * increments);
-            }
-        }
-
-        return subdividedPoints;
+        return subdivide(points, subDevisions, false);
     }
 
     public static final List<Point> subdividePointsRadial(final List<Point> points, final int subDevisions) {
@@ -199,26 +183,63 @@ public class HelperFX {
     public static final Point[] subdividePointsRadial(final Point[] points, final int subDivisions){
         assert points != null;
         assert points.length >= 3;
-        int    noOfPoints = points.length;
-
-        Point[] subdividedPoints = new Point[((noOfPoints - 1) * subDivisions) + 1];
-
-        double increments = 1.0 / (double) subDivisions;
-
-        for (int i = 0 ; i < noOfPoints - 1 ; i++) {
-            Point p0 = i == 0 ? points[noOfPoints - 2] : points[i - 1];
-            Point p1 = points[i];
-            Point p2 = points[i + 1];
-            Point p3 = (i == (noOfPoints - 2)) ? points[1] : points[i + 2];
+        return subdivide(points, subDivisions, true);
+    }
+    private static final Point[] subdivide(final Point[] points, final int subDivisions, final boolean closed) {
+        final CatmullRomEvaluator evaluator   = new CatmullRomEvaluator(subDivisions);
+        final int                 noOfSamples = evaluator.getNoOfSamples(points.length);
+        final double[]            samplesX    = new double[noOfSamples];
+        final double[]            samplesY    = new double[noOfSamples];
+        final double[]            pointsX     = new double[points.length];
+        final double[]            pointsY     = new double[points.length];
+        for (int i = 0 ; i < points.length ; i++) {
+            pointsX[i] = points[i].getX();
+            pointsY[i] = points[i].getY();
+        }
+        if (closed) {
+            evaluator.evaluateClosed(pointsX, pointsY, points.length, samplesX, samplesY);
+        } else {
+            evaluator.evaluate(pointsX, pointsY, points.length, samplesX, samplesY);
+        }
+        final Point[] subdividedPoints = new Point[noOfSamples];
+        for (int i = 0 ; i < noOfSamples ; i++) { subdividedPoints[i] = new Point(samplesX[i], samplesY[i]); }
+        return subdividedPoints;
+    }
 
-            CatmullRom<Point> crs = new CatmullRom<>(p0, p1, p2, p3);
+    /**
+     * Subdivides the same spline as subdividePoints() but only adds as many points as needed
+     * to keep the polyline within the given distance to the spline
+     * @param points    the points of the series
+     * @param tolerance max distance between the spline and the polyline (e.g. 0.25 pixels)
+     * @return the points of the polyline
+     */
+    public static final List<Point> subdividePointsAdaptive(final List<Point> points, final double tolerance) {
+        return Arrays.asList(subdividePointsAdaptive(points.toArray(new Point[0]), tolerance));
+    }
+    public static final Point[] subdividePointsAdaptive(final Point[] points, final double tolerance) {
+        assert points != null;
+        assert points.length >= 3;
+        return subdivideAdaptive(points, tolerance, false);
+    }
 
-            for (int j = 0 ; j <= subDivisions ; j++) {
-                subdividedPoints[(i * subDivisions) + j] = crs.q(j * increments);
-            }
+    public static final List<Point> subdividePointsRadialAdaptive(final List<Point> points, final double tolerance) {
+        return Arrays.asList(subdividePointsRadialAdaptive(points.toArray(new Point[0]), tolerance));
+    }
+    public static final Point[] subdividePointsRadialAdaptive(final Point[] points, final double tolerance) {
+        assert points != null;
+        assert points.length >= 3;
+        return subdivideAdaptive(points, tolerance, true);
+    }
+    private static final Point[] subdivideAdaptive(final Point[] points, final double tolerance, final boolean closed) {
+        final double[] pointsX = new double[points.length];
+        final double[] pointsY = new double[points.length];
+        for (int i = 0 ; i < points.length ; i++) {
+            pointsX[i] = points[i].getX();
+            pointsY[i] = points[i].getY();
         }
-
-        return subdividedPoints;
+        final PointBuffer polyline = closed ? CurveFlattener.flattenCatmullRomClosed(pointsX, pointsY, points.length, tolerance)
+                                            : CurveFlattener.flattenCatmullRom(pointsX, pointsY, points.length, tolerance);
+        return polyline.toPoints().toArray(new Point[0]);
     }
 
     public static final List<Point> subdividePointsLinear(final List<Point> points, final int subDevisions) {
@@ -287,29 +308,70 @@ public class HelperFX {
     }
 
     public static final Point[] smoothSparkLine(final List<Double> dataList, final double minValue, final double maxValue, final Rectangle graphBounds, final int noOfDatapoints) {
-        int     size   = dataList.size();
-        Point[] points = new Point[size];
+        return subdividePoints(sparkLinePoints(dataList, minValue, maxValue, graphBounds.getX(), graphBounds.getY(), graphBounds.getWidth(), graphBounds.getHeight(), noOfDatapoints), 16);
+    }
+    public static final Point[] smoothSparkLine(final List<Double> dataList, final double minValue, final double maxValue, final Rectangle graphBounds, final int noOfDatapoints, final double tolerance) {
+        return subdividePointsAdaptive(sparkLinePoints(dataList, minValue, maxValue, graphBounds.getX(), graphBounds.getY(), graphBounds.getWidth(), graphBounds.getHeight(), noOfDatapoints), tolerance);
+    }
 
-        double low  = Statistics.getMin(dataList);
-        double high = Statistics.getMax(dataList);
+    /**
+     * Same as smoothSparkLine() but series with more values than twice the width of the graph bounds
+     * are reduced with Largest-Triangle-Three-Buckets first, the remaining points keep their x position
+     * @param dataList       the values of the spark line
+     * @param minValue       min value that will be used if all values are equal
+     * @param maxValue       max value that will be used if all values are equal
+     * @param graphBounds    the bounds of the spark line
+     * @param noOfDatapoints max number of values in the spark line
+     * @return the points of the smoothed spark line
+     */
+    public static final Point[] smoothSparkLineDownsampled(final List<Double> dataList, final double minValue, final double maxValue, final Rectangle graphBounds, final int noOfDatapoints) {
+        return subdividePoints(downsampledSparkLinePoints(dataList, minValue, maxValue, graphBounds.getX(), graphBounds.getY(), graphBounds.getWidth(), graphBounds.getHeight(), noOfDatapoints), 16);
+    }
+    public static final Point[] smoothSparkLineDownsampled(final List<Double> dataList, final double minValue, final double maxValue, final javafx.scene.shape.Rectangle graphBounds, final int noOfDatapoints) {
+        return subdividePoints(downsampledSparkLinePoints(dataList, minValue, maxValue, graphBounds.getX(), graphBounds.getY(), graphBounds.getWidth(), graphBounds.getHeight(), noOfDatapoints), 16);
+    }
+    private static final Point[] downsampledSparkLinePoints(final List<Double> dataList, final double minValue, final double maxValue,
+                                                            final double boundsX, final double boundsY, final double boundsWidth, final double boundsHeight, final int noOfDatapoints) {
+        final double[] values  = sparkLineValues(dataList);
+        final int[]    indices = Downsampler.lttb(values, Math.max(3, (int) Math.ceil(boundsWidth * 2)));
+        return sparkLinePoints(values, indices, minValue, maxValue, boundsX, boundsY, boundsWidth, boundsHeight, noOfDatapoints);
+    }
+    private static final Point[] sparkLinePoints(final List<Double> dataList, final double minValue, final double maxValue,
+                                                 final double boundsX, final double boundsY, final double boundsWidth, final double boundsHeight, final int noOfDatapoints) {
+        return sparkLinePoints(sparkLineValues(dataList), null, minValue, maxValue, boundsX, boundsY, boundsWidth, boundsHeight, noOfDatapoints);
+    }
+    /**
+     * Maps the values (or only the ones at the given indices) to the screen points of a spark line, the
+     * value range is taken from all values and falls back to minValue...maxValue if all values are equal
+     */
+    private static final Point[] sparkLinePoints(final double[] values, final int[] indices, final double minValue, final double maxValue,
+                                                 final double boundsX, final double boundsY, final double boundsWidth, final double boundsHeight, final int noOfDatapoints) {
+        double low  = Double.POSITIVE_INFINITY;
+        double high = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            low  = Math.min(low, value);
+            high = Math.max(high, value);
+        }
         if (Helper.equals(low, high)) {
             low  = minValue;
             high = maxValue;
         }
-        double range = high - low;
-
-        double minX  = graphBounds.getX();
-        double maxX  = minX + graphBounds.getWidth();
-        double minY  = graphBounds.getY();
-        double maxY  = minY + graphBounds.getHeight();
-        double stepX = graphBounds.getWidth() / (noOfDatapoints - 1);
-        double stepY = graphBounds.getHeight() / range;
-
-        for (int i = 0 ; i < size ; i++) {
-            points[i] = new Point(minX + i * stepX, maxY - Math.abs(low - dataList.get(i)) * stepY);
+        final double  range      = high - low;
+        final double  maxY       = boundsY + boundsHeight;
+        final double  stepX      = boundsWidth / (noOfDatapoints - 1);
+        final double  stepY      = boundsHeight / range;
+        final int     noOfPoints = null == indices ? values.length : indices.length;
+        final Point[] points     = new Point[noOfPoints];
+        for (int i = 0 ; i < noOfPoints ; i++) {
+            final int index = null == indices ? i : indices[i];
+            points[i] = new Point(boundsX + index * stepX, maxY - Math.abs(low - values[index]) * stepY);
         }
-
-        return subdividePoints(points, 16);
+        return points;
+    }
+    private static final double[] sparkLineValues(final List<Double> dataList) {
+        final double[] values = new double[dataList.size()];
+        for (int i = 0 ; i < values.length ; i++) { values[i] = dataList.get(i); }
+        return values;
     }
 
     public static final boolean isInRectangle(final double x, final double y,
@@ -335,15 +397,16 @@ public class HelperFX {
     }
 
     public static final boolean isInPolygon(final double x, final double y, final List<Point> pointsOfPolygon) {
-        int noOfPointsInPolygon = pointsOfPolygon.size();
-        double[] pointsX = new double[noOfPointsInPolygon];
-        double[] pointsY = new double[noOfPointsInPolygon];
-        for ( int i = 0 ; i < noOfPointsInPolygon ; i++) {
-            Point p = pointsOfPolygon.get(i);
-            pointsX[i] = p.getX();
-            pointsY[i] = p.getY();
+        final int noOfPointsInPolygon = pointsOfPolygon.size();
+        boolean inside = false;
+        for (int i = 0, j = noOfPointsInPolygon - 1; i < noOfPointsInPolygon ; j = i++) {
+            final Point pi = pointsOfPolygon.get(i);
+            final Point pj = pointsOfPolygon.get(j);
+            if (((pi.getY() > y) != (pj.getY() > y)) && (x < (pj.getX() - pi.getX()) * (y - pi.getY()) / (pj.getY() - pi.getY()) + pi.getX())) {
+                inside = !inside;
+            }
         }
-        return isInPolygon(x, y, noOfPointsInPolygon, pointsX, pointsY);
+        return inside;
     }
     public static final boolean isInPolygon(final double x, final double y, final int noOfPointsInPolygon, final double[] pointsX, final double[] pointsY) {
         if (noOfPointsInPolygon != pointsX.length || noOfPointsInPolygon != pointsY.length) { return false; }
@@ -580,6 +643,11 @@ public class HelperFX {
         return subdividePoints(hullPolygon, subDivisions);
     }
 
+    public static final List<Point> createSmoothedConvexHullAdaptive(final List<Point> points, final double tolerance) {
+        List<Point> hullPolygon = createConvexHull(points);
+        return subdividePointsAdaptive(hullPolygon, tolerance);
+    }
+
     private static final <T extends Point> double distance(final T p1, final T p2, final T p3) {
         double deltaX = p2.getX() - p1.getX();
         double deltaY = p2.getY() - p1.getY();
@@ -736,10 +804,15 @@ public class HelperFX {
      * @return list of points incl. the added ones
      */
     public static final List<Point> addPointsOnCurve(final List<Point> curvePoints, final List<Point> points) {
-        List<Point> result   = new ArrayList<>();
+        List<Point> result        = new ArrayList<>();
+        PointHash   resultHash    = new PointHash(EPSILON, curvePoints.size());
         List<Point> polygonPoints = new ArrayList<>(curvePoints);
-        List<Point> pointsToCheck = new ArrayList<>(points);
-        pointsToCheck.removeAll(curvePoints);
+        PointHash   curveHash     = new PointHash(EPSILON, curvePoints.size());
+        curvePoints.forEach(curveHash::add);
+        List<Point> pointsToCheck = new ArrayList<>();
+        for (Point p : points) {
+            if (!curveHash.contains(p)) { pointsToCheck.add(p); }
+        }
 
         int noOfPointsToCheck   = pointsToCheck.size();
         int noOfPointsOnPolygon = polygonPoints.size();
@@ -747,10 +820,13 @@ public class HelperFX {
             Point p1 = polygonPoints.get(i);
             Point p2 = polygonPoints.get(i + 1);
 
-            if (!result.contains(p1)) { result.add(p1); }
+            if (resultHash.add(p1)) { result.add(p1); }
             for (int j = 0 ; j < noOfPointsToCheck ; j++) {
                 Point p = pointsToCheck.get(j);
-                if (isPointOnLine(p, p1, p2)) { result.add(p); }
+                if (isPointOnLine(p, p1, p2)) {
+                    result.add(p);
+                    resultHash.add(p);
+                }
             }
         }
         result.add(polygonPoints.get(noOfPointsOnPolygon - 1));
@@ -846,6 +922,10 @@ public class HelperFX {
         return pointsY;
     }
 
+    public static final double[] getPointsXFromPoints(final PointBuffer points) { return points.getPointsX(); }
+    public static final double[] getPointsYFromPoints(final PointBuffer points) { return points.getPointsY(); }
+
+    public static final double[] getDoubleArrayFromPoints(final PointBuffer points) { return points.toDoubleArray(); }
     public static final double[] getDoubleArrayFromPoints(final List<Point> points) {
         int size = points.size();
         double[] pointsArray = new double[size * 2];
@@ -864,7 +944,8 @@ public class HelperFX {
 
     /**
      * Sort a list of points by it's distance from each other. The algorithm starts with the point closest to
-     * 0,0 and from there always adds the point closest to the last point
+     * 0,0 and from there always adds the point closest to the last point. If several points have the same
+     * distance the one that comes first in the given list will be taken. The given list won't be modified.
      * @param points list of points to sort
      * @return list of points sorted by it's distance from each other
      */
@@ -872,32 +953,33 @@ public class HelperFX {
         return sortByDistance(points, true);
     }
     public static final List<Point> sortByDistance(final List<Point> points, final boolean counterClockWise) {
-        if (points.isEmpty()) { return points; }
-        List<Point> output = new ArrayList<>();
-        output.add(points.get(nearestPoint(new Point(0, 0), points)));
-        points.remove(output.get(0));
-        int x = 0;
-        for (int i = 0; i < points.size() + x; i++) {
-            output.add(points.get(nearestPoint(output.get(output.size() - 1), points)));
-            points.remove(output.get(output.size() - 1));
-            x++;
+        final List<Point> output = new ArrayList<>(points.size());
+        if (points.isEmpty()) { return output; }
+        final KdTree tree  = new KdTree(points);
+        int          index = tree.nearest(0, 0);
+        while (index != KdTree.NONE) {
+            final Point point = points.get(index);
+            output.add(point);
+            tree.remove(index);
+            index = tree.nearest(point.getX(), point.getY());
         }
         if (counterClockWise) { Collections.reverse(output); }
         return output;
     }
     public static final int nearestPoint(final Point p, final List<Point> points) {
-        Pair<Double, Integer> smallestDistance = new Pair<>(0d, 0);
+        final double x                = p.getX();
+        final double y                = p.getY();
+        double       smallestDistance = Double.POSITIVE_INFINITY;
+        int          nearestIndex     = 0;
         for (int i = 0; i < points.size(); i++) {
-            double distance = distance(p.getX(), p.getY(), points.get(i).getX(), points.get(i).getY());
-            if (i == 0) {
-                smallestDistance = new Pair<>(distance, i);
-            } else {
-                if (distance < smallestDistance.getA()) {
-                    smallestDistance = new Pair<>(distance, i);
-                }
+            final Point  point    = points.get(i);
+            final double distance = squareDistance(x, y, point.getX(), point.getY());
+            if (i == 0 || distance < smallestDistance) {
+                smallestDistance = distance;
+                nearestIndex     = i;
             }
         }
-        return smallestDistance.getB();
+        return nearestIndex;
     }
 
     public static final String padLeft(final String text, final String filler, final int n) {
@@ -920,8 +1002,7 @@ public class HelperFX {
         final double tol  = tolerance < 0 ? 0 : tolerance;
         final int    size = points.size();
 
-        List<Point> reducedPoints  = new ArrayList<>(points);
-        Set<Point>  pointsToRemove = new HashSet<>();
+        PointHash pointsToRemove = new PointHash(EPSILON, size);
 
         for (int i = 0 ; i < size - 2 ; i++) {
             Point p1 = points.get(i);
@@ -932,9 +1013,8 @@ public class HelperFX {
             // Remove duplicates
             if (distP1P2 <= tol) { pointsToRemove.add(p2); }
         }
-        reducedPoints.removeAll(pointsToRemove);
 
-        return reducedPoints;
+        return removeAll(points, pointsToRemove);
     }
 
     public static final List<Point> simplify(final List<Point> points, final double angleTolerance, final double minDistance) {
@@ -944,8 +1024,8 @@ public class HelperFX {
         final int    size = points.size();
         if (size <= 4) { return points; }
 
-        List<Point> reducedPoints  = new ArrayList<>(removeDuplicatePoints(points, 1));
-        Set<Point>  pointsToRemove = new HashSet<>();
+        List<Point> reducedPoints  = removeDuplicatePoints(points, 1);
+        PointHash   pointsToRemove = new PointHash(EPSILON, size);
 
         for (int i = 0 ; i < size - 3 ; i++) {
             Point p1 = points.get(i);
@@ -981,10 +1061,17 @@ public class HelperFX {
             pointsToRemove.add(secondLastPoint);
         }
 
-        reducedPoints.removeAll(pointsToRemove);
-
-        return reducedPoints;
+        return removeAll(reducedPoints, pointsToRemove);
     }
+    private static final List<Point> removeAll(final List<Point> points, final PointHash pointsToRemove) {
+        if (pointsToRemove.isEmpty()) { return new ArrayList<>(points); }
+        List<Point> result = new ArrayList<>(points.size());
+        for (Point p : points) {
+            if (!pointsToRemove.contains(p)) { result.add(p); }
+        }
+        return result;
+    }
+
     private static final boolean removeP2(final Point p0, final Point p1, final Point p2, final Point p3, final double tolerance, final double distance) {
         double bearingP1P2  = bearing(p1.getX(), p1.getY(), p2.getX(), p2.getY());
         double bearingP1P3  = bearing(p1.getX(), p1.getY(), p3.getX(), p3.getY());
@@ -1321,29 +1408,10 @@ public class HelperFX {
     }
 
     public static final Point[] smoothSparkLine(final List<Double> dataList, final double minValue, final double maxValue, final javafx.scene.shape.Rectangle graphBounds, final int noOfDatapoints) {
-        int     size   = dataList.size();
-        Point[] points = new Point[size];
-
-        double low  = Statistics.getMin(dataList);
-        double high = Statistics.getMax(dataList);
-        if (Helper.equals(low, high)) {
-            low  = minValue;
-            high = maxValue;
-        }
-        double range = high - low;
-
-        double minX  = graphBounds.getX();
-        //double maxX  = minX + graphBounds.getWidth();
-        double minY  = graphBounds.getY();
-        double maxY  = minY + graphBounds.getHeight();
-        double stepX = graphBounds.getWidth() / (noOfDatapoints - 1);
-        double stepY = graphBounds.getHeight() / range;
-
-        for (int i = 0 ; i < size ; i++) {
-            points[i] = new Point(minX + i * stepX, maxY - Math.abs(low - dataList.get(i)) * stepY);
-        }
-
-        return subdividePoints(points, 16);
+        return subdividePoints(sparkLinePoints(dataList, minValue, maxValue, graphBounds.getX(), graphBounds.getY(), graphBounds.getWidth(), graphBounds.getHeight(), noOfDatapoints), 16);
+    }
+    public static final Point[] smoothSparkLine(final List<Double> dataList, final double minValue, final double maxValue, final javafx.scene.shape.Rectangle graphBounds, final int noOfDatapoints, final double tolerance) {
+        return subdividePointsAdaptive(sparkLinePoints(dataList, minValue, maxValue, graphBounds.getX(), graphBounds.getY(), graphBounds.getWidth(), graphBounds.getHeight(), noOfDatapoints), tolerance);
     }
 
     public static final void drawRoundedRect(final GraphicsContext ctx, final Bounds bounds, final CornerRadii radii) {
@@ -1388,6 +1456,22 @@ public class HelperFX {
         final double y = cubicN(distance, startPointY, controlPoint1Y, controlPoint2Y, endPointY);
         return new double[] { x, y };
     }
+    /**
+     * Returns the points of a polyline that deviates less than the given tolerance from the cubic Bezier curve
+     * @param startPoint
+     * @param controlPoint1
+     * @param controlPoint2
+     * @param endPoint
+     * @param tolerance max distance between the curve and the polyline (e.g. 0.25 pixels)
+     * @return the points of the polyline including the start and end point
+     */
+    public static final List<Point> flattenCubicBezier(final Point startPoint, final Point controlPoint1, final Point controlPoint2, final Point endPoint, final double tolerance) {
+        final PointBuffer polyline = new PointBuffer();
+        polyline.add(startPoint);
+        CurveFlattener.flattenCubic(startPoint.getX(), startPoint.getY(), controlPoint1.getX(), controlPoint1.getY(),
+                                    controlPoint2.getX(), controlPoint2.getY(), endPoint.getX(), endPoint.getY(), tolerance, polyline);
+        return polyline.toPoints();
+    }
     private static final double cubicN(final double distance, final double a, final double b, final double c, final double d) {
         final double t2 = distance * distance;
         final double t3 = t2 * distance;
@@ -1398,126 +1482,221 @@ public class HelperFX {
     // Smooth given path defined by it's list of path elements
     public static final Path smoothPath(final ObservableList<PathElement> elements, final boolean filled) {
         if (elements.isEmpty()) { return new Path(); }
-        final Point[] dataPoints = new Point[elements.size()];
+        return smoothPath(elements, filled, new Path(), new ControlPointBuffer(elements.size()));
+    }
+    public static final Path smoothPath(final ObservableList<PathElement> elements, final boolean filled, final Path target) {
+        return smoothPath(elements, filled, target, new ControlPointBuffer(elements.size()));
+    }
+    /**
+     * Smoothes the given path elements into the given path. The coordinates of the existing
+     * elements of the path are updated in place, only missing elements are added and surplus
+     * elements are removed at the end. Calling this on every animation tick with the same path
+     * and buffer keeps the scene graph stable and doesn't create garbage.
+     * @param elements the MoveTo and LineTo elements of the path to smooth
+     * @param filled   if true the path will be closed at the y coordinate of the first MoveTo
+     * @param target   the path that receives the smoothed elements
+     * @param buffer   scratch space for the points and control points
+     * @return the given target path
+     */
+    public static final Path smoothPath(final ObservableList<PathElement> elements, final boolean filled, final Path target, final ControlPointBuffer buffer) {
+        final ObservableList<PathElement> smoothedElements = target.getElements();
+        if (elements.isEmpty()) {
+            smoothedElements.clear();
+            return target;
+        }
+        buffer.clear();
         for (int i = 0; i < elements.size(); i++) {
             final PathElement element = elements.get(i);
             if (element instanceof MoveTo) {
-                MoveTo move   = (MoveTo) element;
-                dataPoints[i] = new Point(move.getX(), move.getY());
+                MoveTo move = (MoveTo) element;
+                buffer.addPoint(move.getX(), move.getY());
             } else if (element instanceof LineTo) {
-                LineTo line   = (LineTo) element;
-                dataPoints[i] = new Point(line.getX(), line.getY());
+                LineTo line = (LineTo) element;
+                buffer.addPoint(line.getX(), line.getY());
             }
         }
-        double                 zeroY               = ((MoveTo) elements.get(0)).getY();
-        List<PathElement>      smoothedElements    = new ArrayList<>();
-        Pair<Point[], Point[]> result              = calcCurveControlPoints(dataPoints);
-        Point[]                firstControlPoints  = result.getA();
-        Point[]                secondControlPoints = result.getB();
+        final double            zeroY      = ((MoveTo) elements.get(0)).getY();
+        final int               noOfPoints = buffer.getNoOfPoints();
+        final List<PathElement> added      = new ArrayList<>();
+        if (noOfPoints > 1) { buffer.compute(); }
+        int index = 0;
         // Start path dependent on filled or not
         if (filled) {
-            smoothedElements.add(new MoveTo(dataPoints[0].getX(), zeroY));
-            smoothedElements.add(new LineTo(dataPoints[0].getX(), dataPoints[0].getY()));
+            setMoveTo(smoothedElements, added, index++, buffer.getX(0), zeroY);
+            setLineTo(smoothedElements, added, index++, buffer.getX(0), buffer.getY(0));
         } else {
-            smoothedElements.add(new MoveTo(dataPoints[0].getX(), dataPoints[0].getY()));
+            setMoveTo(smoothedElements, added, index++, buffer.getX(0), buffer.getY(0));
         }
         // Add curves
-        for (int i = 2; i < dataPoints.length; i++) {
+        for (int i = 2; i < noOfPoints; i++) {
             final int ci = i - 1;
-            smoothedElements.add(new CubicCurveTo(
-            firstControlPoints[ci].getX(), firstControlPoints[ci].getY(),
-            secondControlPoints[ci].getX(), secondControlPoints[ci].getY(),
-            dataPoints[i].getX(), dataPoints[i].getY()));
+            setCubicCurveTo(smoothedElements, added, index++, buffer.getFirstX(ci), buffer.getFirstY(ci), buffer.getSecondX(ci), buffer.getSecondY(ci), buffer.getX(i), buffer.getY(i));
         }
         // Close the path if filled
         if (filled) {
-            smoothedElements.add(new LineTo(dataPoints[dataPoints.length - 1].getX(), zeroY));
-            smoothedElements.add(new ClosePath());
+            setLineTo(smoothedElements, added, index++, buffer.getX(noOfPoints - 1), zeroY);
+            if (index < smoothedElements.size()) {
+                if (!(smoothedElements.get(index) instanceof ClosePath)) { smoothedElements.set(index, new ClosePath()); }
+            } else {
+                added.add(new ClosePath());
+            }
+            index++;
         }
-        return new Path(smoothedElements);
-    }
-    private static final Pair<Point[], Point[]> calcCurveControlPoints(Point[] dataPoints) {
-        Point[] firstControlPoints;
-        Point[] secondControlPoints;
-        int n = dataPoints.length - 1;
-        if (n == 1) { // Special case: Bezier curve should be a straight line.
-            firstControlPoints     = new Point[1];
-            firstControlPoints[0]  = new Point((2 * dataPoints[0].getX() + dataPoints[1].getX()) / 3, (2 * dataPoints[0].getY() + dataPoints[1].getY()) / 3);
-            secondControlPoints    = new Point[1];
-            secondControlPoints[0] = new Point(2 * firstControlPoints[0].getX() - dataPoints[0].getX(), 2 * firstControlPoints[0].getY() - dataPoints[0].getY());
-            return new Pair<>(firstControlPoints, secondControlPoints);
+        // Add missing elements at once, remove surplus elements at the end
+        if (!added.isEmpty()) {
+            smoothedElements.addAll(added);
+        } else if (index < smoothedElements.size()) {
+            smoothedElements.remove(index, smoothedElements.size());
         }
-
-        // Calculate first Bezier control points
-        // Right hand side vector
-        double[] rhs = new double[n];
-
-        // Set right hand side X values
-        for (int i = 1; i < n - 1; ++i) {
-            rhs[i] = 4 * dataPoints[i].getX() + 2 * dataPoints[i + 1].getX();
+        return target;
+    }
+    private static final void setMoveTo(final List<PathElement> elements, final List<PathElement> added, final int index, final double x, final double y) {
+        if (index >= elements.size()) {
+            added.add(new MoveTo(x, y));
+        } else if (elements.get(index) instanceof MoveTo) {
+            final MoveTo move = (MoveTo) elements.get(index);
+            move.setX(x);
+            move.setY(y);
+        } else {
+            elements.set(index, new MoveTo(x, y));
         }
-        rhs[0]     = dataPoints[0].getX() + 2 * dataPoints[1].getX();
-        rhs[n - 1] = (8 * dataPoints[n - 1].getX() + dataPoints[n].getX()) / 2.0;
-        // Get first control points X-values
-        double[] x = getFirstControlPoints(rhs);
-
-        // Set right hand side Y values
-        for (int i = 1; i < n - 1; ++i) {
-            rhs[i] = 4 * dataPoints[i].getY() + 2 * dataPoints[i + 1].getY();
+    }
+    private static final void setLineTo(final List<PathElement> elements, final List<PathElement> added, final int index, final double x, final double y) {
+        if (index >= elements.size()) {
+            added.add(new LineTo(x, y));
+        } else if (elements.get(index) instanceof LineTo) {
+            final LineTo line = (LineTo) elements.get(index);
+            line.setX(x);
+            line.setY(y);
+        } else {
+            elements.set(index, new LineTo(x, y));
         }
-        rhs[0]     = dataPoints[0].getY() + 2 * dataPoints[1].getY();
-        rhs[n - 1] = (8 * dataPoints[n - 1].getY() + dataPoints[n].getY()) / 2.0;
-        // Get first control points Y-values
-        double[] y = getFirstControlPoints(rhs);
-
-        // Fill output arrays.
-        firstControlPoints  = new Point[n];
-        secondControlPoints = new Point[n];
-        for (int i = 0; i < n; ++i) {
-            // First control point
-            firstControlPoints[i] = new Point(x[i], y[i]);
-            // Second control point
-            if (i < n - 1) {
-                secondControlPoints[i] = new Point(2 * dataPoints[i + 1].getX() - x[i + 1], 2 * dataPoints[i + 1].getY() - y[i + 1]);
-            } else {
-                secondControlPoints[i] = new Point((dataPoints[n].getX() + x[n - 1]) / 2, (dataPoints[n].getY() + y[n - 1]) / 2);
-            }
+    }
+    private static final void setCubicCurveTo(final List<PathElement> elements, final List<PathElement> added, final int index,
+                                              final double controlX1, final double controlY1, final double controlX2, final double controlY2, final double x, final double y) {
+        if (index >= elements.size()) {
+            added.add(new CubicCurveTo(controlX1, controlY1, controlX2, controlY2, x, y));
+        } else if (elements.get(index) instanceof CubicCurveTo) {
+            final CubicCurveTo curve = (CubicCurveTo) elements.get(index);
+            curve.setControlX1(controlX1);
+            curve.setControlY1(controlY1);
+            curve.setControlX2(controlX2);
+            curve.setControlY2(controlY2);
+            curve.setX(x);
+            curve.setY(y);
+        } else {
+            elements.set(index, new CubicCurveTo(controlX1, controlY1, controlX2, controlY2, x, y));
         }
-        return new Pair<>(firstControlPoints, secondControlPoints);
     }
-    private static final double[] getFirstControlPoints(double[] rhs) {
-        int      n   = rhs.length;
-        double[] x   = new double[n]; // Solution vector.
-        double[] tmp = new double[n]; // Temp workspace.
-        double   b   = 2.0;
-
-        x[0] = rhs[0] / b;
 
-        for (int i = 1; i < n; i++) {// Decomposition and forward substitution.
-            tmp[i] = 1 / b;
-            b      = (i < n - 1 ? 4.0 : 3.5) - tmp[i];
-            x[i]   = (rhs[i] - x[i - 1]) / b;
+    // Draw smooth curve through given points directly on canvas (same control points as smoothPath)
+    public static final void strokeSmoothPath(final GraphicsContext ctx, final double[] xs, final double[] ys) {
+        strokeSmoothPath(ctx, xs, ys, Math.min(xs.length, ys.length), new ControlPointBuffer());
+    }
+    /**
+     * Strokes a smooth curve through the given points without creating nodes or points,
+     * pass the same buffer on each redraw to avoid allocations
+     * @param ctx    the graphics context to draw on
+     * @param xs     x coordinates of the points
+     * @param ys     y coordinates of the points
+     * @param size   number of points to use from the arrays
+     * @param buffer scratch space for the control points
+     */
+    public static final void strokeSmoothPath(final GraphicsContext ctx, final double[] xs, final double[] ys, final int size, final ControlPointBuffer buffer) {
+        if (size < 2) { return; }
+        ctx.beginPath();
+        ctx.moveTo(xs[0], ys[0]);
+        addSmoothCurves(ctx, xs, ys, size, buffer);
+        ctx.stroke();
+    }
+    public static final void fillSmoothPath(final GraphicsContext ctx, final double[] xs, final double[] ys, final double zeroY) {
+        fillSmoothPath(ctx, xs, ys, Math.min(xs.length, ys.length), zeroY, new ControlPointBuffer());
+    }
+    /**
+     * Fills the area between a smooth curve through the given points and the given baseline
+     * without creating nodes or points, pass the same buffer on each redraw to avoid allocations
+     * @param ctx    the graphics context to draw on
+     * @param xs     x coordinates of the points
+     * @param ys     y coordinates of the points
+     * @param size   number of points to use from the arrays
+     * @param zeroY  y coordinate of the baseline
+     * @param buffer scratch space for the control points
+     */
+    public static final void fillSmoothPath(final GraphicsContext ctx, final double[] xs, final double[] ys, final int size, final double zeroY, final ControlPointBuffer buffer) {
+        if (size < 2) { return; }
+        ctx.beginPath();
+        ctx.moveTo(xs[0], zeroY);
+        ctx.lineTo(xs[0], ys[0]);
+        addSmoothCurves(ctx, xs, ys, size, buffer);
+        ctx.lineTo(xs[size - 1], zeroY);
+        ctx.closePath();
+        ctx.fill();
+    }
+    /**
+     * Strokes a closed smooth curve through the given points, the first point should not be repeated
+     * @param ctx    the graphics context to draw on
+     * @param xs     x coordinates of the points
+     * @param ys     y coordinates of the points
+     * @param size   number of points to use from the arrays
+     * @param buffer scratch space for the control points
+     */
+    public static final void strokeSmoothClosedPath(final GraphicsContext ctx, final double[] xs, final double[] ys, final int size, final ControlPointBuffer buffer) {
+        if (size < 3) { return; }
+        addSmoothClosedCurves(ctx, xs, ys, size, buffer);
+        ctx.stroke();
+    }
+    /**
+     * Fills a closed smooth curve through the given points, the first point should not be repeated
+     * @param ctx    the graphics context to draw on
+     * @param xs     x coordinates of the points
+     * @param ys     y coordinates of the points
+     * @param size   number of points to use from the arrays
+     * @param buffer scratch space for the control points
+     */
+    public static final void fillSmoothClosedPath(final GraphicsContext ctx, final double[] xs, final double[] ys, final int size, final ControlPointBuffer buffer) {
+        if (size < 3) { return; }
+        addSmoothClosedCurves(ctx, xs, ys, size, buffer);
+        ctx.fill();
+    }
+    private static final void addSmoothClosedCurves(final GraphicsContext ctx, final double[] xs, final double[] ys, final int size, final ControlPointBuffer buffer) {
+        final int noOfSegments = buffer.computeClosed(xs, ys, size);
+        ctx.beginPath();
+        ctx.moveTo(xs[0], ys[0]);
+        for (int i = 0 ; i < noOfSegments ; i++) {
+            final int next = i == noOfSegments - 1 ? 0 : i + 1;
+            ctx.bezierCurveTo(buffer.getFirstX(i), buffer.getFirstY(i), buffer.getSecondX(i), buffer.getSecondY(i), xs[next], ys[next]);
         }
-        for (int i = 1; i < n; i++) {
-            x[n - i - 1] -= tmp[n - i] * x[n - i]; // Backsubstitution.
+        ctx.closePath();
+    }
+    private static final void addSmoothCurves(final GraphicsContext ctx, final double[] xs, final double[] ys, final int size, final ControlPointBuffer buffer) {
+        final int noOfSegments = buffer.compute(xs, ys, size);
+        for (int i = 0 ; i < noOfSegments ; i++) {
+            ctx.bezierCurveTo(buffer.getFirstX(i), buffer.getFirstY(i), buffer.getSecondX(i), buffer.getSecondY(i), xs[i + 1], ys[i + 1]);
         }
-        return x;
     }
 
     public static final boolean isInPolygon(final double x, final double y, final Polygon polygon) {
-        List<Double> points              = polygon.getPoints();
-        int          size                = points.size();
-        int          noOfPointsInPolygon = size / 2;
-        double[]     pointsX             = new double[noOfPointsInPolygon];
-        double[]     pointsY             = new double[noOfPointsInPolygon];
-        int          pointCounter        = 0;
-
-        for (int i = 0 ; i < size - 1 ; i += 2) {
-            pointsX[pointCounter] = points.get(i);
-            pointsY[pointCounter] = points.get(i + 1);
-            pointCounter++;
+        final List<Double> points              = polygon.getPoints();
+        final int          noOfPointsInPolygon = points.size() / 2;
+        boolean inside = false;
+        for (int i = 0, j = noOfPointsInPolygon - 1; i < noOfPointsInPolygon ; j = i++) {
+            final double xi = points.get(i * 2);
+            final double yi = points.get(i * 2 + 1);
+            final double xj = points.get(j * 2);
+            final double yj = points.get(j * 2 + 1);
+            if (((yi > y) != (yj > y)) && (x < (xj - xi) * (y - yi) / (yj - yi) + xi)) {
+                inside = !inside;
+            }
         }
-        return isInPolygon(x, y, noOfPointsInPolygon, pointsX, pointsY);
+        return inside;
+    }
+
+    // Hit testing of curved paths, the flattened path is cached in the properties of the path
+    public static final boolean isInPath(final double x, final double y, final Path path) {
+        return FlattenedShape.of(path, CurveFlattener.DEFAULT_TOLERANCE).contains(x, y);
+    }
+    public static final boolean isNearPath(final double x, final double y, final Path path, final double maxDistance) {
+        return FlattenedShape.of(path, CurveFlattener.DEFAULT_TOLERANCE).isNearStroke(x, y, maxDistance);
     }
 
     public static final int getDegrees(final double decDeg) { return (int) decDeg; }
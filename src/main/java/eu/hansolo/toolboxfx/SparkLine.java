@@ -0,0 +1,283 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx;
+
+import eu.hansolo.toolbox.Helper;
+import eu.hansolo.toolboxfx.geom.CatmullRomEvaluator;
+import eu.hansolo.toolboxfx.geom.Point;
+import eu.hansolo.toolboxfx.geom.Rectangle;
+
+import java.util.List;
+
+
+/**
+ * Model of a smoothed spark line that shows the last values of a stream, it produces the same
+ * points as HelperFX.smoothSparkLine() with noOfDatapoints = capacity.
+ * The values are kept in a ring buffer, the min and max value are tracked with monotonic deques
+ * in O(1) amortized per value. The spline is stored in value space, adding a value only
+ * recomputes the last two segments (and the first one if the oldest value was dropped).
+ * The y coordinates are only recomputed for all segments if the min or max value changed.
+ */
+public class SparkLine {
+    public  static final int                 DEFAULT_SUB_DIVISIONS = 16;
+    private        final int                 capacity;
+    private        final int                 subDivisions;
+    private        final double[]            values;
+    private              long                first;
+    private              long                end;
+    // monotonic deques with the indices of the min and max candidates
+    private        final long[]              minDeque;
+    private        final long[]              maxDeque;
+    private              int                 minHead;
+    private              int                 minSize;
+    private              int                 maxHead;
+    private              int                 maxSize;
+    // spline samples per segment, x relative to the start of the segment in steps, y in value space
+    private        final CatmullRomEvaluator evaluator;
+    private        final double[]            splineX;
+    private        final double[]            splineY;
+    private        final double[]            screenY;
+    private              double              minValue;
+    private              double              maxValue;
+    private              double              low;
+    private              double              high;
+    private              boolean             fallback;
+    private              double              x;
+    private              double              y;
+    private              double              width;
+    private              double              height;
+
+
+    // ******************** Constructors **************************************
+    public SparkLine(final int capacity) {
+        this(capacity, DEFAULT_SUB_DIVISIONS);
+    }
+    public SparkLine(final int capacity, final int subDivisions) {
+        if (capacity < 2) { throw new IllegalArgumentException("capacity must be at least 2"); }
+        if (subDivisions < 1) { throw new IllegalArgumentException("subDivisions must be at least 1"); }
+        this.capacity     = capacity;
+        this.subDivisions = subDivisions;
+        this.values       = new double[capacity];
+        this.minDeque     = new long[capacity];
+        this.maxDeque     = new long[capacity];
+        this.evaluator    = new CatmullRomEvaluator(subDivisions);
+        this.splineX      = new double[capacity * subDivisions];
+        this.splineY      = new double[capacity * subDivisions];
+        this.screenY      = new double[capacity * subDivisions];
+        this.minValue     = 0;
+        this.maxValue     = 100;
+        this.width        = 100;
+        this.height       = 100;
+    }
+
+
+    // ******************** Methods *******************************************
+    public int getCapacity() { return capacity; }
+
+    public int getSubDivisions() { return subDivisions; }
+
+    public int size() { return (int) (end - first); }
+
+    public boolean isEmpty() { return end == first; }
+
+    /**
+     * Returns the value at the given index, 0 is the oldest value
+     * @param index index of the value
+     * @return the value at the given index
+     */
+    public double getValue(final int index) {
+        if (index < 0 || index >= size()) { throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size()); }
+        return values[slot(first + index)];
+    }
+
+    /**
+     * Returns the smallest of the current values
+     * @return the smallest value or NaN if the spark line is empty
+     */
+    public double getMin() { return minSize == 0 ? Double.NaN : values[slot(minDeque[minHead])]; }
+
+    /**
+     * Returns the largest of the current values
+     * @return the largest value or NaN if the spark line is empty
+     */
+    public double getMax() { return maxSize == 0 ? Double.NaN : values[slot(maxDeque[maxHead])]; }
+
+    /**
+     * Defines the range that will be used if all values are equal
+     * @param minValue min value of the range
+     * @param maxValue max value of the range
+     */
+    public void setRange(final double minValue, final double maxValue) {
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        if (updateScale()) { updateScreenY(first, end - 1); }
+    }
+
+    public void setBounds(final Rectangle graphBounds) {
+        setBounds(graphBounds.getX(), graphBounds.getY(), graphBounds.getWidth(), graphBounds.getHeight());
+    }
+    public void setBounds(final javafx.scene.shape.Rectangle graphBounds) {
+        setBounds(graphBounds.getX(), graphBounds.getY(), graphBounds.getWidth(), graphBounds.getHeight());
+    }
+    public void setBounds(final double x, final double y, final double width, final double height) {
+        this.x      = x;
+        this.y      = y;
+        this.width  = width;
+        this.height = height;
+        updateScreenY(first, end - 1);
+    }
+
+    public void addAll(final List<Double> values) { values.forEach(this::add); }
+    public void addAll(final double... values) {
+        for (double value : values) { add(value); }
+    }
+
+    /**
+     * Adds the given value and drops the oldest value if the capacity is reached
+     * @param value the value to add
+     * @return true if the min or max value changed and all y coordinates have been recomputed
+     */
+    public boolean add(final double value) {
+        final boolean dropped = size() == capacity;
+        if (dropped) {
+            if (minDeque[minHead] == first) { minHead = (minHead + 1) % capacity; minSize--; }
+            if (maxDeque[maxHead] == first) { maxHead = (maxHead + 1) % capacity; maxSize--; }
+            first++;
+        }
+        final long index = end++;
+        values[slot(index)] = value;
+        while (minSize > 0 && values[slot(minDeque[(minHead + minSize - 1) % capacity])] >= value) { minSize--; }
+        minDeque[(minHead + minSize++) % capacity] = index;
+        while (maxSize > 0 && values[slot(maxDeque[(maxHead + maxSize - 1) % capacity])] <= value) { maxSize--; }
+        maxDeque[(maxHead + maxSize++) % capacity] = index;
+
+        // the new segment and the one before depend on the new value, the first one on the dropped value
+        final long from = Math.max(first, index - 2);
+        updateSegments(from, index - 1);
+        if (dropped && from > first) { updateSegments(first, first); }
+
+        final boolean rescaled = updateScale();
+        if (rescaled) {
+            updateScreenY(first, index - 1);
+        } else {
+            updateScreenY(from, index - 1);
+            if (dropped && from > first) { updateScreenY(first, first); }
+        }
+        return rescaled;
+    }
+
+    public void clear() {
+        first   = 0;
+        end     = 0;
+        minHead = 0;
+        minSize = 0;
+        maxHead = 0;
+        maxSize = 0;
+    }
+
+    /**
+     * Returns the number of points of the smoothed line
+     * @return (size - 1) * subDivisions + 1 or size if there are less than 2 values
+     */
+    public int getNoOfPoints() {
+        final int size = size();
+        return size < 2 ? size : (size - 1) * subDivisions + 1;
+    }
+
+    /**
+     * Writes the points of the smoothed line into the given arrays
+     * @param xs receives the x coordinates, needs at least getNoOfPoints() elements
+     * @param ys receives the y coordinates, needs at least getNoOfPoints() elements
+     * @return the number of points
+     */
+    public int fill(final double[] xs, final double[] ys) {
+        final int noOfPoints = getNoOfPoints();
+        if (xs.length < noOfPoints || ys.length < noOfPoints) { throw new IllegalArgumentException("xs and ys need at least " + noOfPoints + " elements"); }
+        if (noOfPoints == 0) { return 0; }
+        final double stepX = width / (capacity - 1);
+        int o = 0;
+        for (long segment = first ; segment < end - 1 ; segment++) {
+            final double segmentX = x + (segment - first) * stepX;
+            final int    s        = slot(segment) * subDivisions;
+            for (int j = 0 ; j < subDivisions ; j++, o++) {
+                xs[o] = segmentX + splineX[s + j] * stepX;
+                ys[o] = screenY[s + j];
+            }
+        }
+        xs[o] = x + (end - 1 - first) * stepX;
+        ys[o] = toScreenY(values[slot(end - 1)]);
+        return noOfPoints;
+    }
+
+    public Point[] getPoints() {
+        final int      noOfPoints = getNoOfPoints();
+        final double[] xs         = new double[noOfPoints];
+        final double[] ys         = new double[noOfPoints];
+        fill(xs, ys);
+        final Point[] points = new Point[noOfPoints];
+        for (int i = 0 ; i < noOfPoints ; i++) { points[i] = new Point(xs[i], ys[i]); }
+        return points;
+    }
+
+    private void updateSegments(final long from, final long to) {
+        final long last = end - 1;
+        for (long segment = from ; segment <= to ; segment++) {
+            // first and last value are used twice like in HelperFX.subdividePoints()
+            final long   i0 = segment == first ? segment : segment - 1;
+            final long   i3 = segment + 1 == last ? segment + 1 : segment + 2;
+            final int    s  = slot(segment) * subDivisions;
+            evaluator.evaluateSegment(i0 - segment, 0, 1, i3 - segment, splineX, s);
+            evaluator.evaluateSegment(values[slot(i0)], values[slot(segment)], values[slot(segment + 1)], values[slot(i3)], splineY, s);
+        }
+    }
+
+    /**
+     * Updates low and high like HelperFX.smoothSparkLine()
+     * @return true if the scale changed
+     */
+    private boolean updateScale() {
+        double min = getMin();
+        double max = getMax();
+        final boolean equal = isEmpty() || Helper.equals(min, max);
+        if (equal) {
+            min = minValue;
+            max = maxValue;
+        }
+        if (min == low && max == high && equal == fallback) { return false; }
+        low      = min;
+        high     = max;
+        fallback = equal;
+        return true;
+    }
+
+    private void updateScreenY(final long from, final long to) {
+        for (long segment = from ; segment <= to ; segment++) {
+            final int s = slot(segment) * subDivisions;
+            for (int j = 0 ; j < subDivisions ; j++) { screenY[s + j] = toScreenY(splineY[s + j]); }
+        }
+    }
+
+    private double toScreenY(final double value) {
+        final double stepY = height / (high - low);
+        // all values are equal in the fallback case, the spline is a horizontal line
+        return y + height - (fallback ? Math.abs(low - value) : value - low) * stepY;
+    }
+
+    private int slot(final long index) { return (int) (index % capacity); }
+}
@@ -0,0 +1,213 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+
+/**
+ * Maps the distance along a CubicPath to a position on the path, e.g. to move markers with
+ * constant speed. Each segment is sampled at equidistant t and the cumulative lengths of the
+ * chords are stored, a lookup is a binary search followed by a linear interpolation of t
+ * between two samples. The table is a snapshot, it has to be rebuilt if the path changes.
+ */
+public class ArcLengthTable {
+    public  static final int       DEFAULT_SAMPLES_PER_SEGMENT = 32;
+    private        final CubicPath path;
+    private        final int       samplesPerSegment;
+    private        final double[]  lengths;
+    private        final double[]  tmp;
+
+
+    // ******************** Constructors **************************************
+    public ArcLengthTable(final CubicPath path) {
+        this(path, DEFAULT_SAMPLES_PER_SEGMENT);
+    }
+    public ArcLengthTable(final CubicPath path, final int samplesPerSegment) {
+        if (samplesPerSegment < 1) { throw new IllegalArgumentException("samplesPerSegment must be at least 1"); }
+        if (path.getNoOfSegments() == 0) { throw new IllegalArgumentException("The path has no segments"); }
+        this.path              = path;
+        this.samplesPerSegment = samplesPerSegment;
+        this.lengths           = new double[path.getNoOfSegments() * samplesPerSegment + 1];
+        this.tmp               = new double[2];
+
+        final double[] point = new double[2];
+        double lastX  = path.getStartX();
+        double lastY  = path.getStartY();
+        double length = 0;
+        int    index  = 1;
+        for (int segment = 0 ; segment < path.getNoOfSegments() ; segment++) {
+            for (int j = 1 ; j <= samplesPerSegment ; j++, index++) {
+                path.evaluate(segment, (double) j / samplesPerSegment, point);
+                length += Math.sqrt((point[0] - lastX) * (point[0] - lastX) + (point[1] - lastY) * (point[1] - lastY));
+                lengths[index] = length;
+                lastX = point[0];
+                lastY = point[1];
+            }
+        }
+    }
+
+
+    // ******************** Methods *******************************************
+    public CubicPath getPath() { return path; }
+
+    public double getLength() { return lengths[lengths.length - 1]; }
+
+    /**
+     * Returns the path parameter at the given distance from the start of the path
+     * @param distance distance along the path, clamped to 0...length
+     * @return the parameter between 0 and the number of segments
+     */
+    public double getParameterAt(final double distance) {
+        final int last = lengths.length - 1;
+        if (distance <= 0) { return 0; }
+        if (distance >= lengths[last]) { return path.getNoOfSegments(); }
+        // first sample with a length >= distance
+        int low  = 1;
+        int high = last;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (lengths[mid] < distance) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return parameterAt(low, distance);
+    }
+
+    /**
+     * Writes the point at the given distance from the start of the path into result[0] and result[1]
+     * @param distance distance along the path, clamped to 0...length
+     * @param result   receives the x and y coordinate
+     */
+    public void getPointAt(final double distance, final double[] result) { path.getPointAt(getParameterAt(distance), result); }
+    public Point getPointAt(final double distance) {
+        final double[] result = new double[2];
+        getPointAt(distance, result);
+        return new Point(result[0], result[1]);
+    }
+
+    /**
+     * Writes the normalized tangent at the given distance from the start of the path into result[0] and result[1]
+     * @param distance distance along the path, clamped to 0...length
+     * @param result   receives the x and y component of the direction, 0 if the path has no length
+     */
+    public void getTangentAt(final double distance, final double[] result) {
+        final double parameter = getParameterAt(distance);
+        final int    segment   = path.segmentOf(parameter);
+        final double t         = Math.max(0, Math.min(1, parameter - segment));
+        path.derivative(segment, t, result);
+        double length = Math.sqrt(result[0] * result[0] + result[1] * result[1]);
+        if (length < 1e-12) {
+            // derivative vanishes at a cusp or at coinciding control points, use the direction of the curve around t
+            final double t0 = Math.max(0, t - 1e-3);
+            final double t1 = Math.min(1, t + 1e-3);
+            path.evaluate(segment, t1, result);
+            final double x1 = result[0];
+            final double y1 = result[1];
+            path.evaluate(segment, t0, result);
+            result[0] = x1 - result[0];
+            result[1] = y1 - result[1];
+            length    = Math.sqrt(result[0] * result[0] + result[1] * result[1]);
+            if (length < 1e-12) {
+                result[0] = 0;
+                result[1] = 0;
+                return;
+            }
+        }
+        result[0] /= length;
+        result[1] /= length;
+    }
+
+    /**
+     * Returns the angle of the tangent at the given distance from the start of the path
+     * @param distance distance along the path, clamped to 0...length
+     * @return the angle in degrees (0 = pointing to the right, 90 = pointing down in screen coordinates)
+     */
+    public double getAngleAt(final double distance) {
+        getTangentAt(distance, tmp);
+        return Math.toDegrees(Math.atan2(tmp[1], tmp[0]));
+    }
+
+    /**
+     * Returns points with the given distance along the path, starting at the start of the path
+     * @param spacing distance between two points along the path
+     * @return the points, the last point is at most spacing away from the end of the path
+     */
+    public PointBuffer resample(final double spacing) {
+        if (spacing <= 0) { throw new IllegalArgumentException("spacing must be positive"); }
+        final int         noOfPoints = (int) Math.floor(getLength() / spacing) + 1;
+        final PointBuffer result     = new PointBuffer(noOfPoints);
+        final double[]    xs         = new double[noOfPoints];
+        final double[]    ys         = new double[noOfPoints];
+        resample(0, spacing, noOfPoints, xs, ys);
+        for (int i = 0 ; i < noOfPoints ; i++) { result.add(xs[i], ys[i]); }
+        return result;
+    }
+
+    /**
+     * Writes the given number of points that are equally spaced along the whole path into the given arrays,
+     * the first point is the start and the last point is the end of the path
+     * @param noOfPoints number of points, at least 2
+     * @param xs         receives the x coordinates
+     * @param ys         receives the y coordinates
+     */
+    public void resample(final int noOfPoints, final double[] xs, final double[] ys) {
+        if (noOfPoints < 2) { throw new IllegalArgumentException("noOfPoints must be at least 2"); }
+        resample(0, getLength() / (noOfPoints - 1), noOfPoints, xs, ys);
+    }
+
+    /**
+     * Writes points with the given spacing along the path into the given arrays, the arrays
+     * are walked together with the table so this takes O(samples + noOfPoints)
+     * @param start      distance of the first point from the start of the path
+     * @param spacing    distance between two points along the path
+     * @param noOfPoints number of points to write, distances beyond the end are clamped
+     * @param xs         receives the x coordinates
+     * @param ys         receives the y coordinates
+     */
+    public void resample(final double start, final double spacing, final int noOfPoints, final double[] xs, final double[] ys) {
+        if (spacing < 0) { throw new IllegalArgumentException("spacing must not be negative"); }
+        if (xs.length < noOfPoints || ys.length < noOfPoints) { throw new IllegalArgumentException("xs and ys need at least " + noOfPoints + " elements"); }
+        final int    last   = lengths.length - 1;
+        final double length = lengths[last];
+        int index = 1;
+        for (int i = 0 ; i < noOfPoints ; i++) {
+            final double distance = start + i * spacing;
+            final double parameter;
+            if (distance <= 0) {
+                parameter = 0;
+            } else if (distance >= length) {
+                parameter = path.getNoOfSegments();
+            } else {
+                while (index < last && lengths[index] < distance) { index++; }
+                parameter = parameterAt(index, distance);
+            }
+            path.getPointAt(parameter, tmp);
+            xs[i] = tmp[0];
+            ys[i] = tmp[1];
+        }
+    }
+
+    private double parameterAt(final int sample, final double distance) {
+        final double l0       = lengths[sample - 1];
+        final double l1       = lengths[sample];
+        final double fraction = l1 > l0 ? (distance - l0) / (l1 - l0) : 0;
+        return (sample - 1 + fraction) / samplesPerSegment;
+    }
+}
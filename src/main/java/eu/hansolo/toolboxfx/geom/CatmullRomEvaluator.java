@@ -0,0 +1,155 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import java.util.stream.IntStream;
+
+
+/**
+ * Samples uniform Catmull-Rom splines through a series of points with a fixed number of
+ * subdivisions per segment. The weights of the four control points are computed once for
+ * each t, so every sample only takes 4 multiplications per coordinate and is written
+ * directly into the given output arrays. Long series are evaluated in parallel.
+ * The result is the same as from CatmullRom.q() used by HelperFX.subdividePoints().
+ */
+public class CatmullRomEvaluator {
+    private static final int      MIN_CHUNK_SIZE = 4096;
+    private        final int      subDivisions;
+    private        final double[] w0;
+    private        final double[] w1;
+    private        final double[] w2;
+    private        final double[] w3;
+
+
+    // ******************** Constructors **************************************
+    public CatmullRomEvaluator(final int subDivisions) {
+        if (subDivisions < 1) { throw new IllegalArgumentException("subDivisions must be at least 1"); }
+        this.subDivisions = subDivisions;
+        this.w0           = new double[subDivisions];
+        this.w1           = new double[subDivisions];
+        this.w2           = new double[subDivisions];
+        this.w3           = new double[subDivisions];
+        final double increment = 1.0 / subDivisions;
+        for (int j = 0 ; j < subDivisions ; j++) {
+            final double t  = j * increment;
+            final double t2 = t * t;
+            final double t3 = t2 * t;
+            w0[j] = 0.5 * (-t + 2 * t2 - t3);
+            w1[j] = 0.5 * (2 - 5 * t2 + 3 * t3);
+            w2[j] = 0.5 * (t + 4 * t2 - 3 * t3);
+            w3[j] = 0.5 * (-t2 + t3);
+        }
+    }
+
+
+    // ******************** Methods *******************************************
+    public int getSubDivisions() { return subDivisions; }
+
+    /**
+     * Returns the number of samples for the given number of points
+     * @param noOfPoints number of points of the series
+     * @return (noOfPoints - 1) * subDivisions + 1
+     */
+    public int getNoOfSamples(final int noOfPoints) { return noOfPoints < 2 ? noOfPoints : (noOfPoints - 1) * subDivisions + 1; }
+
+    /**
+     * Samples the open spline through the given points like HelperFX.subdividePoints(),
+     * the first and last point are used twice as outer control points
+     * @param xs   x coordinates of the points
+     * @param ys   y coordinates of the points
+     * @param size number of points to use from the arrays
+     * @param outX receives the x coordinates of the samples, needs at least getNoOfSamples(size) elements
+     * @param outY receives the y coordinates of the samples, needs at least getNoOfSamples(size) elements
+     * @return the number of samples
+     */
+    public int evaluate(final double[] xs, final double[] ys, final int size, final double[] outX, final double[] outY) {
+        return evaluate(xs, ys, size, outX, outY, false);
+    }
+
+    /**
+     * Samples the closed spline through the given points like HelperFX.subdividePointsRadial(),
+     * the last point is expected to be equal to the first point
+     * @param xs   x coordinates of the points
+     * @param ys   y coordinates of the points
+     * @param size number of points to use from the arrays
+     * @param outX receives the x coordinates of the samples, needs at least getNoOfSamples(size) elements
+     * @param outY receives the y coordinates of the samples, needs at least getNoOfSamples(size) elements
+     * @return the number of samples
+     */
+    public int evaluateClosed(final double[] xs, final double[] ys, final int size, final double[] outX, final double[] outY) {
+        return evaluate(xs, ys, size, outX, outY, true);
+    }
+
+    /**
+     * Samples one coordinate of the segment between p1 and p2 at t = 0, 1 / subDivisions, ... (excluding t = 1)
+     * @param p0     coordinate of the point before the segment
+     * @param p1     coordinate of the start of the segment
+     * @param p2     coordinate of the end of the segment
+     * @param p3     coordinate of the point after the segment
+     * @param out    receives the samples, needs at least offset + getSubDivisions() elements
+     * @param offset index of the first sample in out
+     */
+    public void evaluateSegment(final double p0, final double p1, final double p2, final double p3, final double[] out, final int offset) {
+        for (int j = 0, o = offset ; j < subDivisions ; j++, o++) { out[o] = w0[j] * p0 + w1[j] * p1 + w2[j] * p2 + w3[j] * p3; }
+    }
+
+    private int evaluate(final double[] xs, final double[] ys, final int size, final double[] outX, final double[] outY, final boolean closed) {
+        if (size < 0 || size > xs.length || size > ys.length) { throw new IllegalArgumentException("size must be between 0 and the length of the coordinate arrays"); }
+        if (closed && size < 3) { throw new IllegalArgumentException("A closed spline needs at least 3 points"); }
+        final int noOfSamples = getNoOfSamples(size);
+        if (outX.length < noOfSamples || outY.length < noOfSamples) { throw new IllegalArgumentException("outX and outY need at least " + noOfSamples + " elements"); }
+        if (size < 2) {
+            if (size == 1) {
+                outX[0] = xs[0];
+                outY[0] = ys[0];
+            }
+            return size;
+        }
+
+        final int noOfSegments = size - 1;
+        if (noOfSegments * (long) subDivisions < MIN_CHUNK_SIZE * 2L) {
+            evaluateSegments(xs, ys, size, outX, outY, closed, 0, noOfSegments);
+        } else {
+            final int segmentsPerChunk = Math.max(1, MIN_CHUNK_SIZE / subDivisions);
+            final int noOfChunks       = (noOfSegments + segmentsPerChunk - 1) / segmentsPerChunk;
+            IntStream.range(0, noOfChunks).parallel().forEach(chunk -> evaluateSegments(xs, ys, size, outX, outY, closed, chunk * segmentsPerChunk, Math.min(noOfSegments, (chunk + 1) * segmentsPerChunk)));
+        }
+
+        // the last sample is the end of the last segment
+        outX[noOfSamples - 1] = xs[size - 1];
+        outY[noOfSamples - 1] = ys[size - 1];
+        return noOfSamples;
+    }
+
+    private void evaluateSegments(final double[] xs, final double[] ys, final int size, final double[] outX, final double[] outY, final boolean closed, final int fromSegment, final int toSegment) {
+        for (int i = fromSegment ; i < toSegment ; i++) {
+            final int i0;
+            final int i3;
+            if (closed) {
+                i0 = i == 0 ? size - 2 : i - 1;
+                i3 = i == size - 2 ? 1 : i + 2;
+            } else {
+                i0 = i == 0 ? 0 : i - 1;
+                i3 = i + 2 == size ? i + 1 : i + 2;
+            }
+            evaluateSegment(xs[i0], xs[i], xs[i + 1], xs[i3], outX, i * subDivisions);
+            evaluateSegment(ys[i0], ys[i], ys[i + 1], ys[i3], outY, i * subDivisions);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import java.util.Random;
+
+
+/**
+ * Packs circles without overlaps like d3-hierarchy pack. Each circle is placed tangent to two
+ * circles of the front chain (the circles on the outside of the packing) as close as possible
+ * to the center. Like in d3 every circle scans the whole front chain for the best position, so
+ * the cost grows faster than linear and gets close to quadratic for large inputs: a few
+ * milliseconds for about 1,000 circles, tens of milliseconds for 10,000 and hundreds of
+ * milliseconds for 40,000, so per frame layouts should stay in the low thousands.
+ * The result only depends on the input, the smallest enclosing circle is computed with a
+ * shuffle that uses a fixed seed.
+ * The resulting coordinates can be scaled and moved with PointBuffer.wrap(xs, ys, size).
+ */
+public final class CirclePacker {
+    private static final long   SEED    = 1;
+    private static final double EPSILON = 1e-6;
+
+
+    // ******************** Constructors **************************************
+    private CirclePacker() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Places circles with the given radii next to each other without overlaps,
+     * the smallest circle that encloses all of them is centered at 0, 0
+     * @param radii radii of the circles, the first circles end up in the center
+     * @param xs    receives the x coordinates of the centers
+     * @param ys    receives the y coordinates of the centers
+     * @return the radius of the smallest circle that encloses all circles
+     */
+    public static double packSiblings(final double[] radii, final double[] xs, final double[] ys) {
+        if (xs.length < radii.length || ys.length < radii.length) { throw new IllegalArgumentException("xs and ys must not be smaller than radii"); }
+        return packSiblings(radii, xs, ys, radii.length);
+    }
+
+    /**
+     * Packs a hierarchy of circles like d3 pack, the children of each node are packed into the circle of
+     * the node. The nodes are given by the index of their parent, there has to be exactly one root node.
+     * @param parents index of the parent of each node or -1 for the root node
+     * @param radii   radii of the leaf nodes, receives the computed radii of the other nodes
+     * @param padding space between the circles of sibling nodes and between the children and their parent
+     * @param xs      receives the x coordinates of the centers, the root node is centered at 0, 0
+     * @param ys      receives the y coordinates of the centers
+     * @return the radius of the root node
+     */
+    public static double packHierarchy(final int[] parents, final double[] radii, final double padding, final double[] xs, final double[] ys) {
+        final int n = parents.length;
+        if (radii.length < n || xs.length < n || ys.length < n) { throw new IllegalArgumentException("radii, xs and ys must not be smaller than parents"); }
+        if (padding < 0) { throw new IllegalArgumentException("padding must not be negative"); }
+        if (n == 0) { return 0; }
+
+        // children of each node in index order
+        final int[] childOffsets = new int[n + 1];
+        int root = -1;
+        for (int i = 0 ; i < n ; i++) {
+            final int parent = parents[i];
+            if (parent < 0) {
+                if (root >= 0) { throw new IllegalArgumentException("There must be exactly one root node"); }
+                root = i;
+            } else {
+                if (parent >= n || parent == i) { throw new IllegalArgumentException("Invalid parent index " + parent + " of node " + i); }
+                childOffsets[parent + 1]++;
+            }
+        }
+        if (root < 0) { throw new IllegalArgumentException("There must be exactly one root node"); }
+        for (int i = 0 ; i < n ; i++) { childOffsets[i + 1] += childOffsets[i]; }
+        final int[] children = new int[n];
+        final int[] fill     = new int[n];
+        for (int i = 0 ; i < n ; i++) {
+            if (parents[i] >= 0) { children[childOffsets[parents[i]] + fill[parents[i]]++] = i; }
+        }
+
+        // nodes in pre order, reversed it is a valid post order
+        final int[] order = new int[n];
+        final int[] stack = new int[n];
+        int noOfNodes = 0;
+        int top       = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            final int node = stack[--top];
+            order[noOfNodes++] = node;
+            for (int c = childOffsets[node + 1] - 1 ; c >= childOffsets[node] ; c--) { stack[top++] = children[c]; }
+        }
+        if (noOfNodes != n) { throw new IllegalArgumentException("The parent indices contain a cycle"); }
+
+        // pack the children of each node relative to the node, bottom up
+        final double[] childRadii = new double[n];
+        final double[] childXs    = new double[n];
+        final double[] childYs    = new double[n];
+        for (int o = n - 1 ; o >= 0 ; o--) {
+            final int node = order[o];
+            final int from = childOffsets[node];
+            final int to   = childOffsets[node + 1];
+            if (from == to) { continue; }
+            final int noOfChildren = to - from;
+            for (int c = 0 ; c < noOfChildren ; c++) { childRadii[c] = radii[children[from + c]] + padding; }
+            final double enclosingRadius = packSiblings(childRadii, childXs, childYs, noOfChildren);
+            for (int c = 0 ; c < noOfChildren ; c++) {
+                xs[children[from + c]] = childXs[c];
+                ys[children[from + c]] = childYs[c];
+            }
+            radii[node] = enclosingRadius + padding;
+        }
+
+        // make the coordinates absolute, top down
+        xs[root] = 0;
+        ys[root] = 0;
+        for (int o = 1 ; o < n ; o++) {
+            final int node = order[o];
+            xs[node] += xs[parents[node]];
+            ys[node] += ys[parents[node]];
+        }
+        return radii[root];
+    }
+
+    /**
+     * Returns the smallest circle that encloses the given circles
+     * @param xs    x coordinates of the centers
+     * @param ys    y coordinates of the centers
+     * @param radii radii of the circles
+     * @return the enclosing circle as { centerX, centerY, radius }
+     */
+    public static double[] enclose(final double[] xs, final double[] ys, final double[] radii) {
+        if (xs.length != ys.length || xs.length != radii.length) { throw new IllegalArgumentException("xs, ys and radii must have the same length"); }
+        final int[] indices = new int[xs.length];
+        for (int i = 0 ; i < indices.length ; i++) { indices[i] = i; }
+        return enclose(xs, ys, radii, indices, indices.length);
+    }
+
+    private static double packSiblings(final double[] r, final double[] x, final double[] y, final int n) {
+        if (n == 0) { return 0; }
+
+        // place the first circle
+        x[0] = 0;
+        y[0] = 0;
+        if (n == 1) { return r[0]; }
+
+        // place the second circle
+        x[0] = -r[1];
+        x[1] = r[0];
+        y[1] = 0;
+        if (n == 2) { return r[0] + r[1]; }
+
+        // place the third circle
+        place(r, x, y, 1, 0, 2);
+
+        // front chain as doubly linked list of circle indices
+        final int[] next     = new int[n];
+        final int[] previous = new int[n];
+        int a = 0;
+        int b = 1;
+        int c = 2;
+        next[a] = previous[c] = b;
+        next[b] = previous[a] = c;
+        next[c] = previous[b] = a;
+
+        pack:
+        for (int i = 3 ; i < n ; i++) {
+            c = i;
+            place(r, x, y, a, b, c);
+
+            // find the closest circle on the front chain that intersects the new one (closeness by distance along the chain)
+            int    j  = next[b];
+            int    k  = previous[a];
+            double sj = r[b];
+            double sk = r[a];
+            do {
+                if (sj <= sk) {
+                    if (intersects(r, x, y, j, c)) {
+                        b = j;
+                        next[a]     = b;
+                        previous[b] = a;
+                        i--;
+                        continue pack;
+                    }
+                    sj += r[j];
+                    j   = next[j];
+                } else {
+                    if (intersects(r, x, y, k, c)) {
+                        a = k;
+                        next[a]     = b;
+                        previous[b] = a;
+                        i--;
+                        continue pack;
+                    }
+                    sk += r[k];
+                    k   = previous[k];
+                }
+            } while (j != next[k]);
+
+            // insert the new circle between a and b
+            previous[c] = a;
+            next[c]     = b;
+            next[a]     = c;
+            previous[b] = c;
+            b           = c;
+
+            // find the pair of neighbours on the front chain that is closest to the origin
+            double bestScore = score(r, x, y, a, next[a]);
+            while ((c = next[c]) != b) {
+                final double currentScore = score(r, x, y, c, next[c]);
+                if (currentScore < bestScore) {
+                    a         = c;
+                    bestScore = currentScore;
+                }
+            }
+            b = next[a];
+        }
+
+        // enclose the front chain and move the enclosing circle to the origin
+        final int[] chain = new int[n];
+        int noOfChainCircles = 0;
+        c = b;
+        do {
+            chain[noOfChainCircles++] = c;
+            c = next[c];
+        } while (c != b);
+        final double[] enclosing = enclose(x, y, r, chain, noOfChainCircles);
+        for (int i = 0 ; i < n ; i++) {
+            x[i] -= enclosing[0];
+            y[i] -= enclosing[1];
+        }
+        return enclosing[2];
+    }
+
+    /**
+     * Places circle c tangent to circle a and b
+     */
+    private static void place(final double[] r, final double[] x, final double[] y, final int b, final int a, final int c) {
+        final double dx = x[b] - x[a];
+        final double dy = y[b] - y[a];
+        final double d2 = dx * dx + dy * dy;
+        if (d2 > 0) {
+            double a2 = r[a] + r[c];
+            double b2 = r[b] + r[c];
+            a2 *= a2;
+            b2 *= b2;
+            if (a2 > b2) {
+                final double px = (d2 + b2 - a2) / (2 * d2);
+                final double py = Math.sqrt(Math.max(0, b2 / d2 - px * px));
+                x[c] = x[b] - px * dx - py * dy;
+                y[c] = y[b] - px * dy + py * dx;
+            } else {
+                final double px = (d2 + a2 - b2) / (2 * d2);
+                final double py = Math.sqrt(Math.max(0, a2 / d2 - px * px));
+                x[c] = x[a] + px * dx - py * dy;
+                y[c] = y[a] + px * dy + py * dx;
+            }
+        } else {
+            x[c] = x[a] + r[c];
+            y[c] = y[a];
+        }
+    }
+
+    private static boolean intersects(final double[] r, final double[] x, final double[] y, final int a, final int b) {
+        final double dr = r[a] + r[b] - EPSILON;
+        final double dx = x[b] - x[a];
+        final double dy = y[b] - y[a];
+        return dr > 0 && dr * dr > dx * dx + dy * dy;
+    }
+
+    private static double score(final double[] r, final double[] x, final double[] y, final int a, final int b) {
+        final double ab = r[a] + r[b];
+        final double dx = (x[a] * r[b] + x[b] * r[a]) / ab;
+        final double dy = (y[a] * r[b] + y[b] * r[a]) / ab;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Welzl's move to front algorithm for circles on a shuffled copy of the given indices
+     */
+    private static double[] enclose(final double[] x, final double[] y, final double[] r, final int[] indices, final int n) {
+        if (n == 0) { return new double[] { 0, 0, 0 }; }
+        final int[]  circles = new int[n];
+        final Random random  = new Random(SEED);
+        System.arraycopy(indices, 0, circles, 0, n);
+        for (int i = n - 1 ; i > 0 ; i--) {
+            final int j   = random.nextInt(i + 1);
+            final int tmp = circles[i];
+            circles[i] = circles[j];
+            circles[j] = tmp;
+        }
+
+        final int[] basis     = new int[3];
+        int         basisSize = 0;
+        double[]    e         = null;
+        int         i         = 0;
+        while (i < n) {
+            final int p = circles[i];
+            if (null != e && enclosesWeak(e[0], e[1], e[2], x[p], y[p], r[p])) {
+                i++;
+            } else {
+                basisSize = extendBasis(x, y, r, basis, basisSize, p);
+                e         = encloseBasis(x, y, r, basis, basisSize);
+                i         = 0;
+            }
+        }
+        return e;
+    }
+
+    private static int extendBasis(final double[] x, final double[] y, final double[] r, final int[] basis, final int basisSize, final int p) {
+        if (enclosesWeakAll(x[p], y[p], r[p], x, y, r, basis, basisSize)) {
+            basis[0] = p;
+            return 1;
+        }
+        for (int i = 0 ; i < basisSize ; i++) {
+            final int bi = basis[i];
+            if (enclosesNot(x[p], y[p], r[p], x[bi], y[bi], r[bi])) {
+                final double[] e = encloseBasis2(x, y, r, bi, p);
+                if (enclosesWeakAll(e[0], e[1], e[2], x, y, r, basis, basisSize)) {
+                    basis[0] = bi;
+                    basis[1] = p;
+                    return 2;
+                }
+            }
+        }
+        for (int i = 0 ; i < basisSize - 1 ; i++) {
+            final int bi = basis[i];
+            for (int j = i + 1 ; j < basisSize ; j++) {
+                final int      bj  = basis[j];
+                final double[] eij = encloseBasis2(x, y, r, bi, bj);
+                final double[] eip = encloseBasis2(x, y, r, bi, p);
+                final double[] ejp = encloseBasis2(x, y, r, bj, p);
+                if (enclosesNot(eij[0], eij[1], eij[2], x[p], y[p], r[p]) &&
+                    enclosesNot(eip[0], eip[1], eip[2], x[bj], y[bj], r[bj]) &&
+                    enclosesNot(ejp[0], ejp[1], ejp[2], x[bi], y[bi], r[bi])) {
+                    final double[] e = encloseBasis3(x, y, r, bi, bj, p);
+                    if (enclosesWeakAll(e[0], e[1], e[2], x, y, r, basis, basisSize)) {
+                        basis[0] = bi;
+                        basis[1] = bj;
+                        basis[2] = p;
+                        return 3;
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("Unable to compute the enclosing circle");
+    }
+
+    private static boolean enclosesNot(final double ax, final double ay, final double ar, final double bx, final double by, final double br) {
+        final double dr = ar - br;
+        final double dx = bx - ax;
+        final double dy = by - ay;
+        return dr < 0 || dr * dr < dx * dx + dy * dy;
+    }
+
+    private static boolean enclosesWeak(final double ax, final double ay, final double ar, final double bx, final double by, final double br) {
+        final double dr = ar - br + Math.max(Math.max(ar, br), 1) * 1e-9;
+        final double dx = bx - ax;
+        final double dy = by - ay;
+        return dr > 0 && dr * dr > dx * dx + dy * dy;
+    }
+
+    private static boolean enclosesWeakAll(final double ax, final double ay, final double ar, final double[] x, final double[] y, final double[] r, final int[] basis, final int basisSize) {
+        for (int i = 0 ; i < basisSize ; i++) {
+            final int b = basis[i];
+            if (!enclosesWeak(ax, ay, ar, x[b], y[b], r[b])) { return false; }
+        }
+        return true;
+    }
+
+    private static double[] encloseBasis(final double[] x, final double[] y, final double[] r, final int[] basis, final int basisSize) {
+        switch (basisSize) {
+            case 1 : return new double[] { x[basis[0]], y[basis[0]], r[basis[0]] };
+            case 2 : return encloseBasis2(x, y, r, basis[0], basis[1]);
+            default: return encloseBasis3(x, y, r, basis[0], basis[1], basis[2]);
+        }
+    }
+
+    private static double[] encloseBasis2(final double[] x, final double[] y, final double[] r, final int a, final int b) {
+        final double x1  = x[a];
+        final double y1  = y[a];
+        final double r1  = r[a];
+        final double x21 = x[b] - x1;
+        final double y21 = y[b] - y1;
+        final double r21 = r[b] - r1;
+        final double l   = Math.sqrt(x21 * x21 + y21 * y21);
+        return new double[] { (x1 + x[b] + x21 / l * r21) / 2, (y1 + y[b] + y21 / l * r21) / 2, (l + r1 + r[b]) / 2 };
+    }
+
+    private static double[] encloseBasis3(final double[] x, final double[] y, final double[] r, final int a, final int b, final int c) {
+        final double x1  = x[a], y1 = y[a], r1 = r[a];
+        final double x2  = x[b], y2 = y[b], r2 = r[b];
+        final double x3  = x[c], y3 = y[c], r3 = r[c];
+        final double a2  = x1 - x2;
+        final double a3  = x1 - x3;
+        final double b2  = y1 - y2;
+        final double b3  = y1 - y3;
+        final double c2  = r2 - r1;
+        final double c3  = r3 - r1;
+        final double d1  = x1 * x1 + y1 * y1 - r1 * r1;
+        final double d2  = d1 - x2 * x2 - y2 * y2 + r2 * r2;
+        final double d3  = d1 - x3 * x3 - y3 * y3 + r3 * r3;
+        final double ab  = a3 * b2 - a2 * b3;
+        final double xa  = (b2 * d3 - b3 * d2) / (ab * 2) - x1;
+        final double xb  = (b3 * c2 - b2 * c3) / ab;
+        final double ya  = (a3 * d2 - a2 * d3) / (ab * 2) - y1;
+        final double yb  = (a2 * c3 - a3 * c2) / ab;
+        final double qa  = xb * xb + yb * yb - 1;
+        final double qb  = 2 * (r1 + xa * xb + ya * yb);
+        final double qc  = xa * xa + ya * ya - r1 * r1;
+        final double rad = -(Math.abs(qa) > EPSILON ? (qb + Math.sqrt(qb * qb - 4 * qa * qc)) / (2 * qa) : qc / qb);
+        return new double[] { x1 + xa + xb * rad, y1 + ya + yb * rad, rad };
+    }
+}
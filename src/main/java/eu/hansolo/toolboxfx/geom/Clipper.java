@@ -0,0 +1,201 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Clips polygons (Sutherland-Hodgman) and polylines (Liang-Barsky) against a rectangular
+ * viewport, e.g. to only create path elements for the visible part of a zoomed chart.
+ * The viewport can be enlarged by a margin so that strokes and smoothed curves close to the
+ * border are not cut visibly. Coordinates are read from and written to PointBuffers.
+ */
+public final class Clipper {
+    private static final int LEFT   = 0;
+    private static final int RIGHT  = 1;
+    private static final int TOP    = 2;
+    private static final int BOTTOM = 3;
+
+
+    // ******************** Constructors **************************************
+    private Clipper() {}
+
+
+    // ******************** Methods *******************************************
+    public static PointBuffer clipPolygon(final List<Point> polygon, final Bounds viewport, final double margin) {
+        return clipPolygon(new PointBuffer(polygon), viewport, margin);
+    }
+    public static PointBuffer clipPolygon(final PointBuffer polygon, final Bounds viewport, final double margin) {
+        return clipPolygon(polygon, viewport.getMinX() - margin, viewport.getMinY() - margin, viewport.getMaxX() + margin, viewport.getMaxY() + margin, new PointBuffer(polygon.size()));
+    }
+    public static PointBuffer clipPolygon(final PointBuffer polygon, final Rectangle viewport, final double margin) {
+        return clipPolygon(polygon, viewport.getX() - margin, viewport.getY() - margin, viewport.getX() + viewport.getWidth() + margin, viewport.getY() + viewport.getHeight() + margin, new PointBuffer(polygon.size()));
+    }
+    /**
+     * Clips the given closed polygon against the given rectangle with the Sutherland-Hodgman algorithm.
+     * Parts of a concave polygon that are connected outside of the rectangle will be connected along
+     * the border of the rectangle, which is invisible when the result is filled.
+     * @param polygon the points of the polygon
+     * @param minX    left border of the rectangle
+     * @param minY    top border of the rectangle
+     * @param maxX    right border of the rectangle
+     * @param maxY    bottom border of the rectangle
+     * @param result  receives the points of the clipped polygon, must not be the polygon or a view
+     * @return the given result buffer
+     */
+    public static PointBuffer clipPolygon(final PointBuffer polygon, final double minX, final double minY, final double maxX, final double maxY, final PointBuffer result) {
+        if (minX > maxX || minY > maxY) { throw new IllegalArgumentException("min values must not be larger than max values"); }
+        result.clear();
+        final int size = polygon.size();
+        if (size == 0) { return result; }
+
+        final Bounds bounds = polygon.getBounds();
+        if (bounds.getMinX() >= minX && bounds.getMaxX() <= maxX && bounds.getMinY() >= minY && bounds.getMaxY() <= maxY) {
+            result.addAll(polygon);
+            return result;
+        }
+        if (bounds.getMaxX() < minX || bounds.getMinX() > maxX || bounds.getMaxY() < minY || bounds.getMinY() > maxY) { return result; }
+
+        // alternate between two buffers, after the 4th border the points end up in the result
+        PointBuffer input  = polygon;
+        PointBuffer output = new PointBuffer(size + 4);
+        PointBuffer other  = result;
+        for (int edge = LEFT ; edge <= BOTTOM ; edge++) {
+            output.clear();
+            final double   border = edge == LEFT ? minX : edge == RIGHT ? maxX : edge == TOP ? minY : maxY;
+            final double[] xs     = input.getXArray();
+            final double[] ys     = input.getYArray();
+            final int      offset = input.getOffset();
+            final int      n      = input.size();
+            double  prevX      = xs[offset + n - 1];
+            double  prevY      = ys[offset + n - 1];
+            boolean prevInside = isInside(edge, border, prevX, prevY);
+            for (int i = 0 ; i < n ; i++) {
+                final double  x      = xs[offset + i];
+                final double  y      = ys[offset + i];
+                final boolean inside = isInside(edge, border, x, y);
+                if (inside != prevInside) {
+                    if (edge == LEFT || edge == RIGHT) {
+                        output.add(border, prevY + (y - prevY) * (border - prevX) / (x - prevX));
+                    } else {
+                        output.add(prevX + (x - prevX) * (border - prevY) / (y - prevY), border);
+                    }
+                }
+                if (inside) { output.add(x, y); }
+                prevX      = x;
+                prevY      = y;
+                prevInside = inside;
+            }
+            if (output.isEmpty()) {
+                result.clear();
+                break;
+            }
+            final PointBuffer next = other;
+            other  = output;
+            input  = output;
+            output = next;
+        }
+        return result;
+    }
+
+    public static List<PointBuffer> clipPolyline(final List<Point> polyline, final Bounds viewport, final double margin) {
+        return clipPolyline(new PointBuffer(polyline), viewport, margin);
+    }
+    public static List<PointBuffer> clipPolyline(final PointBuffer polyline, final Bounds viewport, final double margin) {
+        return clipPolyline(polyline, viewport.getMinX() - margin, viewport.getMinY() - margin, viewport.getMaxX() + margin, viewport.getMaxY() + margin);
+    }
+    public static List<PointBuffer> clipPolyline(final PointBuffer polyline, final Rectangle viewport, final double margin) {
+        return clipPolyline(polyline, viewport.getX() - margin, viewport.getY() - margin, viewport.getX() + viewport.getWidth() + margin, viewport.getY() + viewport.getHeight() + margin);
+    }
+    /**
+     * Clips the given open polyline against the given rectangle with the Liang-Barsky algorithm.
+     * A polyline that leaves the rectangle and enters it again will be split into several pieces.
+     * @param polyline the points of the polyline
+     * @param minX     left border of the rectangle
+     * @param minY     top border of the rectangle
+     * @param maxX     right border of the rectangle
+     * @param maxY     bottom border of the rectangle
+     * @return the visible pieces of the polyline in the order of the polyline
+     */
+    public static List<PointBuffer> clipPolyline(final PointBuffer polyline, final double minX, final double minY, final double maxX, final double maxY) {
+        if (minX > maxX || minY > maxY) { throw new IllegalArgumentException("min values must not be larger than max values"); }
+        final List<PointBuffer> pieces = new ArrayList<>();
+        final int               size   = polyline.size();
+        final double[]          xs     = polyline.getXArray();
+        final double[]          ys     = polyline.getYArray();
+        final int               offset = polyline.getOffset();
+        if (size == 1) {
+            if (xs[offset] >= minX && xs[offset] <= maxX && ys[offset] >= minY && ys[offset] <= maxY) { pieces.add(polyline.copy()); }
+            return pieces;
+        }
+
+        final double[] t     = new double[2];
+        PointBuffer    piece = null;
+        for (int i = 1 ; i < size ; i++) {
+            final double x0 = xs[offset + i - 1];
+            final double y0 = ys[offset + i - 1];
+            final double dx = xs[offset + i] - x0;
+            final double dy = ys[offset + i] - y0;
+            t[0] = 0;
+            t[1] = 1;
+            if (!clip(-dx, x0 - minX, t) || !clip(dx, maxX - x0, t) || !clip(-dy, y0 - minY, t) || !clip(dy, maxY - y0, t)) {
+                piece = null;
+                continue;
+            }
+            final double t0 = t[0];
+            final double t1 = t[1];
+            if (null == piece || t0 > 0) {
+                piece = new PointBuffer();
+                pieces.add(piece);
+                piece.add(t0 == 0 ? x0 : x0 + t0 * dx, t0 == 0 ? y0 : y0 + t0 * dy);
+            }
+            piece.add(t1 == 1 ? xs[offset + i] : x0 + t1 * dx, t1 == 1 ? ys[offset + i] : y0 + t1 * dy);
+            if (t1 < 1) { piece = null; }
+        }
+        return pieces;
+    }
+
+    /**
+     * Narrows the parameter range t[0] - t[1] of a segment to the part where p * t <= q
+     * @return false if no part of the segment is left
+     */
+    private static boolean clip(final double p, final double q, final double[] t) {
+        if (p == 0) { return q >= 0; }
+        final double r = q / p;
+        if (p < 0) {
+            if (r > t[1]) { return false; }
+            if (r > t[0]) { t[0] = r; }
+        } else {
+            if (r < t[0]) { return false; }
+            if (r < t[1]) { t[1] = r; }
+        }
+        return true;
+    }
+
+    private static boolean isInside(final int edge, final double border, final double x, final double y) {
+        switch (edge) {
+            case LEFT  : return x >= border;
+            case RIGHT : return x <= border;
+            case TOP   : return y >= border;
+            default    : return y <= border;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import eu.hansolo.toolbox.Helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+
+/**
+ * Hierarchical cluster index for markers on a map (e.g. Poi or Location objects).
+ * All clusters are precomputed for each zoom level between MIN_ZOOM and MAX_ZOOM,
+ * markers that are closer than the given radius (in pixels) on a given zoom level
+ * will be merged into one cluster that has the number of markers and their centroid.
+ * On MAX_ZOOM (the max zoom level of a Location) no clustering is done.
+ * Each zoom level is stored in a KdTree, which makes viewport queries independent
+ * of the total number of markers.
+ * Queries share internal scratch buffers, so an index must not be queried from
+ * different threads at the same time.
+ * @param <T> type of the markers
+ */
+public class ClusterIndex<T> {
+    public  static final int     MIN_ZOOM           = 0;
+    public  static final int     MAX_ZOOM           = 17;
+    public  static final double  DEFAULT_RADIUS     = 40;
+    public  static final double  DEFAULT_TILE_SIZE  = 256;
+    public  static final int     DEFAULT_MIN_POINTS = 2;
+    private static final int     ZOOM_BITS          = 5;
+    private static final int     ZOOM_MASK          = (1 << ZOOM_BITS) - 1;
+    private        final List<T> items;
+    private        final double  radius;
+    private        final double  tileSize;
+    private        final int     minPoints;
+    private        final Level[] levels;
+    private              int[]   scratch;
+
+
+    // ******************** Constructors **************************************
+    public ClusterIndex(final List<T> items, final ToDoubleFunction<? super T> latitudeFunction, final ToDoubleFunction<? super T> longitudeFunction) {
+        this(items, latitudeFunction, longitudeFunction, DEFAULT_RADIUS, DEFAULT_TILE_SIZE, DEFAULT_MIN_POINTS);
+    }
+    /**
+     * Creates the cluster index for the given items
+     * @param items             the markers
+     * @param latitudeFunction  function that returns the latitude of a marker
+     * @param longitudeFunction function that returns the longitude of a marker
+     * @param radius            cluster radius in pixels
+     * @param tileSize          size of a map tile in pixels
+     * @param minPoints         min number of markers that form a cluster
+     */
+    public ClusterIndex(final List<T> items, final ToDoubleFunction<? super T> latitudeFunction, final ToDoubleFunction<? super T> longitudeFunction,
+                        final double radius, final double tileSize, final int minPoints) {
+        if (radius <= 0 || tileSize <= 0) { throw new IllegalArgumentException("radius and tileSize must be positive"); }
+        if (minPoints < 2) { throw new IllegalArgumentException("minPoints must be at least 2"); }
+        this.items     = new ArrayList<>(items);
+        this.radius    = radius;
+        this.tileSize  = tileSize;
+        this.minPoints = minPoints;
+        this.levels    = new Level[MAX_ZOOM + 1];
+        this.scratch   = new int[64];
+
+        final int   noOfItems = this.items.size();
+        final Level markers   = new Level(noOfItems);
+        for (int i = 0 ; i < noOfItems ; i++) {
+            final T item = this.items.get(i);
+            markers.add(longitudeToX(longitudeFunction.applyAsDouble(item)), latitudeToY(latitudeFunction.applyAsDouble(item)), 1, i);
+        }
+        markers.buildTree();
+        levels[MAX_ZOOM] = markers;
+        for (int zoom = MAX_ZOOM - 1 ; zoom >= MIN_ZOOM ; zoom--) {
+            levels[zoom] = cluster(levels[zoom + 1], zoom);
+        }
+    }
+
+
+    // ******************** Methods *******************************************
+    public static ClusterIndex<Poi> ofPois(final List<Poi> pois) { return new ClusterIndex<>(pois, Poi::getLat, Poi::getLon); }
+
+    public static ClusterIndex<Location> ofLocations(final List<Location> locations) { return new ClusterIndex<>(locations, Location::getLatitude, Location::getLongitude); }
+
+    public int getNoOfItems() { return items.size(); }
+
+    public List<Cluster<T>> getClusters(final Location upperLeft, final Location lowerRight, final int zoom) {
+        return getClusters(upperLeft.getLongitude(), lowerRight.getLatitude(), lowerRight.getLongitude(), upperLeft.getLatitude(), zoom);
+    }
+    /**
+     * Returns the clusters and single markers that are visible in the given area on the given zoom level.
+     * If west is larger than east the area crosses the antimeridian.
+     * @param west  min longitude of the area
+     * @param south min latitude of the area
+     * @param east  max longitude of the area
+     * @param north max latitude of the area
+     * @param zoom  zoom level, will be clamped to MIN_ZOOM - MAX_ZOOM
+     * @return the clusters and single markers in the given area
+     */
+    public List<Cluster<T>> getClusters(final double west, final double south, final double east, final double north, final int zoom) {
+        final List<Cluster<T>> result = new ArrayList<>();
+        final Level            level  = levels[Helper.clamp(MIN_ZOOM, MAX_ZOOM, zoom)];
+        final double           minLat = Helper.clamp(-90.0, 90.0, south);
+        final double           maxLat = Helper.clamp(-90.0, 90.0, north);
+        double minLon;
+        double maxLon;
+        if (east - west >= 360) {
+            minLon = -180;
+            maxLon = 180;
+        } else {
+            minLon = ((west + 180) % 360 + 360) % 360 - 180;
+            maxLon = Double.compare(east, 180) == 0 ? 180 : ((east + 180) % 360 + 360) % 360 - 180;
+        }
+        if (minLon > maxLon) {
+            addClusters(level, -180, minLat, maxLon, maxLat, result);
+            addClusters(level, minLon, minLat, 180, maxLat, result);
+        } else {
+            addClusters(level, minLon, minLat, maxLon, maxLat, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the clusters and markers one zoom level below the given cluster
+     * @param clusterId the id of the cluster
+     * @return the children of the given cluster
+     */
+    public List<Cluster<T>> getChildren(final long clusterId) {
+        final Level level       = getOriginLevel(clusterId);
+        final int   originIndex = getOriginIndex(clusterId);
+        final int   originZoom  = getOriginZoom(clusterId);
+        final int   count       = neighbours(level, level.xs[originIndex], level.ys[originIndex], getRadius(originZoom - 1));
+        final List<Cluster<T>> children = new ArrayList<>();
+        for (int i = 0 ; i < count ; i++) {
+            final int index = scratch[i];
+            if (level.parents[index] == clusterId) { children.add(createCluster(level, index)); }
+        }
+        if (children.isEmpty()) { throw new IllegalArgumentException("No cluster with id " + clusterId); }
+        return children;
+    }
+
+    /**
+     * Returns the zoom level on which the given cluster splits into more than one child
+     * @param clusterId the id of the cluster
+     * @return the zoom level on which the cluster expands
+     */
+    public int getExpansionZoom(final long clusterId) {
+        long id   = clusterId;
+        int  zoom = getOriginZoom(id) - 1;
+        while (zoom < MAX_ZOOM) {
+            final List<Cluster<T>> children = getChildren(id);
+            zoom++;
+            if (children.size() != 1 || !children.get(0).isCluster()) { break; }
+            id = children.get(0).getId();
+        }
+        return zoom;
+    }
+
+    private void addClusters(final Level level, final double minLon, final double minLat, final double maxLon, final double maxLat, final List<Cluster<T>> result) {
+        final double minX = longitudeToX(minLon);
+        final double minY = latitudeToY(maxLat);
+        final double maxX = longitudeToX(maxLon);
+        final double maxY = latitudeToY(minLat);
+        int count = level.tree.range(minX, minY, maxX, maxY, scratch);
+        if (count > scratch.length) {
+            scratch = new int[count];
+            count   = level.tree.range(minX, minY, maxX, maxY, scratch);
+        }
+        for (int i = 0 ; i < count ; i++) { result.add(createCluster(level, scratch[i])); }
+    }
+
+    private Level cluster(final Level level, final int zoom) {
+        final double r    = getRadius(zoom);
+        final Level  next = new Level(level.size);
+        for (int i = 0 ; i < level.size ; i++) {
+            if (level.zooms[i] <= zoom) { continue; }
+            level.zooms[i] = zoom;
+
+            final double x          = level.xs[i];
+            final double y          = level.ys[i];
+            final int    count      = neighbours(level, x, y, r);
+            int          noOfPoints = level.counts[i];
+            for (int j = 0 ; j < count ; j++) {
+                final int neighbour = scratch[j];
+                if (level.zooms[neighbour] > zoom) { noOfPoints += level.counts[neighbour]; }
+            }
+
+            if (noOfPoints > level.counts[i] && noOfPoints >= minPoints) {
+                // merge the point with its unprocessed neighbours into a weighted centroid
+                final long id = ((long) i << ZOOM_BITS) + (zoom + 1) + items.size();
+                double wx = x * level.counts[i];
+                double wy = y * level.counts[i];
+                for (int j = 0 ; j < count ; j++) {
+                    final int neighbour = scratch[j];
+                    if (level.zooms[neighbour] <= zoom) { continue; }
+                    level.zooms[neighbour]   = zoom;
+                    level.parents[neighbour] = id;
+                    wx += level.xs[neighbour] * level.counts[neighbour];
+                    wy += level.ys[neighbour] * level.counts[neighbour];
+                }
+                level.parents[i] = id;
+                next.add(wx / noOfPoints, wy / noOfPoints, noOfPoints, id);
+            } else {
+                next.add(x, y, level.counts[i], level.ids[i]);
+                if (noOfPoints > 1) {
+                    for (int j = 0 ; j < count ; j++) {
+                        final int neighbour = scratch[j];
+                        if (level.zooms[neighbour] <= zoom) { continue; }
+                        level.zooms[neighbour] = zoom;
+                        next.add(level.xs[neighbour], level.ys[neighbour], level.counts[neighbour], level.ids[neighbour]);
+                    }
+                }
+            }
+        }
+        next.buildTree();
+        return next;
+    }
+
+    private int neighbours(final Level level, final double x, final double y, final double r) {
+        int count = level.tree.withinRadius(x, y, r, scratch);
+        if (count > scratch.length) {
+            scratch = new int[count];
+            count   = level.tree.withinRadius(x, y, r, scratch);
+        }
+        return count;
+    }
+
+    private Cluster<T> createCluster(final Level level, final int index) {
+        final long    id     = level.ids[index];
+        final boolean isItem = id < items.size();
+        return new Cluster<>(id, !isItem, level.counts[index], yToLatitude(level.ys[index]), xToLongitude(level.xs[index]), isItem ? items.get((int) id) : null);
+    }
+
+    private double getRadius(final int zoom) { return radius / (tileSize * Math.pow(2, zoom)); }
+
+    private int getOriginZoom(final long clusterId) { return (int) ((clusterId - items.size()) & ZOOM_MASK); }
+
+    private int getOriginIndex(final long clusterId) { return (int) ((clusterId - items.size()) >> ZOOM_BITS); }
+
+    private Level getOriginLevel(final long clusterId) {
+        final int originZoom  = getOriginZoom(clusterId);
+        final int originIndex = getOriginIndex(clusterId);
+        if (clusterId < items.size() || originZoom <= MIN_ZOOM || originZoom > MAX_ZOOM || originIndex >= levels[originZoom].size) {
+            throw new IllegalArgumentException("No cluster with id " + clusterId);
+        }
+        return levels[originZoom];
+    }
+
+    // spherical mercator projection to [0, 1]
+    private static double longitudeToX(final double longitude) { return longitude / 360.0 + 0.5; }
+
+    private static double latitudeToY(final double latitude) {
+        final double sin = Math.sin(Math.toRadians(latitude));
+        final double y   = 0.5 - 0.25 * Math.log((1 + sin) / (1 - sin)) / Math.PI;
+        return y < 0 ? 0 : y > 1 ? 1 : y;
+    }
+
+    private static double xToLongitude(final double x) { return (x - 0.5) * 360.0; }
+
+    private static double yToLatitude(final double y) {
+        final double y2 = Math.toRadians(180 - y * 360);
+        return 360 * Math.atan(Math.exp(y2)) / Math.PI - 90;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class Level {
+        private double[] xs;
+        private double[] ys;
+        private int[]    counts;
+        private long[]   ids;
+        private long[]   parents;
+        private int[]    zooms;
+        private int      size;
+        private KdTree   tree;
+
+
+        // ******************** Constructors **********************************
+        Level(final int capacity) {
+            final int length = Math.max(1, capacity);
+            xs      = new double[length];
+            ys      = new double[length];
+            counts  = new int[length];
+            ids     = new long[length];
+            size    = 0;
+        }
+
+
+        // ******************** Methods ***************************************
+        void add(final double x, final double y, final int count, final long id) {
+            xs[size]     = x;
+            ys[size]     = y;
+            counts[size] = count;
+            ids[size]    = id;
+            size++;
+        }
+
+        void buildTree() {
+            xs      = Arrays.copyOf(xs, size);
+            ys      = Arrays.copyOf(ys, size);
+            counts  = Arrays.copyOf(counts, size);
+            ids     = Arrays.copyOf(ids, size);
+            parents = new long[size];
+            zooms   = new int[size];
+            Arrays.fill(parents, -1);
+            Arrays.fill(zooms, Integer.MAX_VALUE);
+            tree    = new KdTree(xs, ys, size);
+        }
+    }
+
+    /**
+     * A cluster of markers or a single marker on a specific zoom level
+     * @param <T> type of the markers
+     */
+    public static class Cluster<T> {
+        private final long    id;
+        private final boolean cluster;
+        private final int     count;
+        private final double  latitude;
+        private final double  longitude;
+        private final T       item;
+
+
+        // ******************** Constructors **********************************
+        Cluster(final long id, final boolean cluster, final int count, final double latitude, final double longitude, final T item) {
+            this.id        = id;
+            this.cluster   = cluster;
+            this.count     = count;
+            this.latitude  = latitude;
+            this.longitude = longitude;
+            this.item      = item;
+        }
+
+
+        // ******************** Methods ***************************************
+        /**
+         * Returns the id of the cluster, for a single marker this is the index of the marker
+         * in the list the index was created from
+         * @return the id of the cluster
+         */
+        public long getId() { return id; }
+
+        public boolean isCluster() { return cluster; }
+
+        public int getCount() { return count; }
+
+        public double getLatitude() { return latitude; }
+
+        public double getLongitude() { return longitude; }
+
+        /**
+         * Returns the marker if this is not a cluster
+         * @return the marker or null if this is a cluster
+         */
+        public T getItem() { return item; }
+
+        public Location getLocation() { return new Location(latitude, longitude); }
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import java.util.Arrays;
+
+
+/**
+ * Broad phase collision detection for many moving circles and line segments.
+ * The objects are stored in a uniform grid (spatial hash) by their bounds, moving an
+ * object only updates the grid if it enters other cells. findCollisions() only runs the
+ * exact tests on objects that share a grid cell and reports each colliding pair once.
+ * Circles collide if they overlap (like HelperFX.checkCircleCircleCollision() returning 1),
+ * a circle collides with a segment if the distance of its center to the segment is smaller
+ * than its radius. Segments don't collide with each other.
+ * A good cell size is about the diameter of the typical circle.
+ */
+public class CollisionWorld {
+    public  static final double      DEFAULT_CELL_SIZE    = 64;
+    private static final long        MAX_CELLS_PER_OBJECT = 1024;
+    private static final byte        FREE                 = 0;
+    private static final byte        CIRCLE               = 1;
+    private static final byte        SEGMENT              = 2;
+    private        final SpatialGrid grid;
+    private        final IntList     freeIds;
+    private        final IntList     oversized;
+    private        final IntList     pairs;
+    private              byte[]      types;
+    // circle: centerX, centerY, radius, segment: x1, y1, x2, y2
+    private              double[]    params;
+    // covered cells: minCellX, minCellY, maxCellX, maxCellY
+    private              int[]       cells;
+    private              int         capacity;
+    private              int         noOfIds;
+    private              int         size;
+
+
+    // ******************** Constructors **************************************
+    public CollisionWorld() {
+        this(DEFAULT_CELL_SIZE);
+    }
+    public CollisionWorld(final double cellSize) {
+        this.grid      = new SpatialGrid(cellSize);
+        this.freeIds   = new IntList();
+        this.oversized = new IntList();
+        this.pairs     = new IntList();
+        this.capacity  = 16;
+        this.types     = new byte[capacity];
+        this.params    = new double[capacity * 4];
+        this.cells     = new int[capacity * 4];
+        this.noOfIds   = 0;
+        this.size      = 0;
+    }
+
+
+    // ******************** Methods *******************************************
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean contains(final int id) { return id >= 0 && id < noOfIds && types[id] != FREE; }
+
+    public boolean isCircle(final int id) { return checkId(id) == CIRCLE; }
+
+    public boolean isSegment(final int id) { return checkId(id) == SEGMENT; }
+
+    public int addCircle(final Point center, final double radius) { return addCircle(center.getX(), center.getY(), radius); }
+    public int addCircle(final double centerX, final double centerY, final double radius) {
+        if (radius < 0) { throw new IllegalArgumentException("radius must not be negative"); }
+        return add(CIRCLE, centerX, centerY, radius, 0);
+    }
+
+    public int addSegment(final Point p1, final Point p2) { return addSegment(p1.getX(), p1.getY(), p2.getX(), p2.getY()); }
+    public int addSegment(final double x1, final double y1, final double x2, final double y2) {
+        return add(SEGMENT, x1, y1, x2, y2);
+    }
+
+    /**
+     * Returns the parameter of the object with the given id
+     * @param id    the id of the object
+     * @param index 0 - 2 (centerX, centerY, radius) for circles, 0 - 3 (x1, y1, x2, y2) for segments
+     * @return the value of the parameter
+     */
+    public double get(final int id, final int index) {
+        checkId(id);
+        if (index < 0 || index > 3) { throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length 4"); }
+        return params[id * 4 + index];
+    }
+
+    public void moveCircleTo(final int id, final double centerX, final double centerY) {
+        if (checkId(id) != CIRCLE) { throw new IllegalArgumentException("Object with id " + id + " is not a circle"); }
+        set(id, centerX, centerY, params[id * 4 + 2], 0);
+    }
+
+    public void setCircle(final int id, final double centerX, final double centerY, final double radius) {
+        if (checkId(id) != CIRCLE) { throw new IllegalArgumentException("Object with id " + id + " is not a circle"); }
+        if (radius < 0) { throw new IllegalArgumentException("radius must not be negative"); }
+        set(id, centerX, centerY, radius, 0);
+    }
+
+    public void moveSegmentTo(final int id, final double x1, final double y1, final double x2, final double y2) {
+        if (checkId(id) != SEGMENT) { throw new IllegalArgumentException("Object with id " + id + " is not a segment"); }
+        set(id, x1, y1, x2, y2);
+    }
+
+    /**
+     * Moves the object with the given id by the given offset
+     * @param id the id of the object
+     * @param dx offset in x direction
+     * @param dy offset in y direction
+     */
+    public void moveBy(final int id, final double dx, final double dy) {
+        final int o = id * 4;
+        if (checkId(id) == CIRCLE) {
+            set(id, params[o] + dx, params[o + 1] + dy, params[o + 2], 0);
+        } else {
+            set(id, params[o] + dx, params[o + 1] + dy, params[o + 2] + dx, params[o + 3] + dy);
+        }
+    }
+
+    public void remove(final int id) {
+        checkId(id);
+        unregister(id);
+        types[id] = FREE;
+        freeIds.add(id);
+        size--;
+    }
+
+    public void clear() {
+        grid.clear();
+        freeIds.clear();
+        oversized.clear();
+        Arrays.fill(types, FREE);
+        noOfIds = 0;
+        size    = 0;
+    }
+
+    /**
+     * Reports every pair of colliding objects once to the given handler. The pairs are collected
+     * before the handler is called, so the handler may move, add and remove objects (e.g. to push
+     * overlapping circles apart). Pairs with an object that has been removed by the handler are skipped
+     * unless its id has been reused by an object that was added in the meantime.
+     * @param handler receives the ids of the colliding objects, the smaller id comes first
+     * @return the number of colliding pairs that have been reported
+     */
+    public int findCollisions(final CollisionHandler handler) {
+        pairs.clear();
+        collectPairs(pairs);
+        // the handler must not call findCollisions() because the list of pairs is reused
+        final int noOfValues = pairs.size();
+        int       noOfPairs  = 0;
+        for (int i = 0 ; i < noOfValues ; i += 2) {
+            final int id1 = pairs.get(i);
+            final int id2 = pairs.get(i + 1);
+            if (types[id1] == FREE || types[id2] == FREE) { continue; }
+            handler.handle(id1, id2);
+            noOfPairs++;
+        }
+        return noOfPairs;
+    }
+
+    /**
+     * Returns the ids of all colliding pairs in the form id1, id2, id1, id2, ...
+     * @return the ids of all colliding pairs
+     */
+    public int[] getCollidingPairs() {
+        final IntList result = new IntList();
+        collectPairs(result);
+        return result.toArray();
+    }
+
+    /**
+     * Returns true if the two objects with the given ids collide
+     * @param id1 the id of the first object
+     * @param id2 the id of the second object
+     * @return true if the two objects collide
+     */
+    public boolean collides(final int id1, final int id2) {
+        checkId(id1);
+        checkId(id2);
+        return id1 != id2 && collide(id1, id2);
+    }
+
+    /**
+     * Adds the ids of every colliding pair once to the given list, the smaller id comes first
+     */
+    private void collectPairs(final IntList result) {
+        for (int id = 0 ; id < noOfIds ; id++) {
+            if (types[id] == FREE || isOversized(id)) { continue; }
+            final int c        = id * 4;
+            final int minCellX = cells[c];
+            final int minCellY = cells[c + 1];
+            final int maxCellX = cells[c + 2];
+            final int maxCellY = cells[c + 3];
+            for (int cy = minCellY ; cy <= maxCellY ; cy++) {
+                for (int cx = minCellX ; cx <= maxCellX ; cx++) {
+                    final IntList candidates = grid.get(cx, cy);
+                    for (int i = 0, n = candidates.size() ; i < n ; i++) {
+                        final int other = candidates.get(i);
+                        if (other <= id) { continue; }
+                        // objects that share several cells are only tested in the first cell they share
+                        final int o = other * 4;
+                        if (cx != Math.max(minCellX, cells[o]) || cy != Math.max(minCellY, cells[o + 1])) { continue; }
+                        if (collide(id, other)) {
+                            result.add(id);
+                            result.add(other);
+                        }
+                    }
+                }
+            }
+        }
+        for (int i = 0, n = oversized.size() ; i < n ; i++) {
+            final int id = oversized.get(i);
+            for (int other = 0 ; other < noOfIds ; other++) {
+                // pairs of two oversized objects are only tested once
+                if (types[other] == FREE || other == id || (other < id && isOversized(other))) { continue; }
+                if (collide(id, other)) {
+                    result.add(Math.min(id, other));
+                    result.add(Math.max(id, other));
+                }
+            }
+        }
+    }
+
+    private boolean collide(final int id1, final int id2) {
+        final byte type1 = types[id1];
+        final byte type2 = types[id2];
+        if (type1 == CIRCLE && type2 == CIRCLE) {
+            final int    o1   = id1 * 4;
+            final int    o2   = id2 * 4;
+            final double dx   = params[o1] - params[o2];
+            final double dy   = params[o1 + 1] - params[o2 + 1];
+            final double rSum = params[o1 + 2] + params[o2 + 2];
+            return dx * dx + dy * dy < rSum * rSum;
+        } else if (type1 == CIRCLE && type2 == SEGMENT) {
+            return circleHitsSegment(id1 * 4, id2 * 4);
+        } else if (type1 == SEGMENT && type2 == CIRCLE) {
+            return circleHitsSegment(id2 * 4, id1 * 4);
+        }
+        return false;
+    }
+
+    private boolean circleHitsSegment(final int circle, final int segment) {
+        final double centerX = params[circle];
+        final double centerY = params[circle + 1];
+        final double radius  = params[circle + 2];
+        final double x1      = params[segment];
+        final double y1      = params[segment + 1];
+        final double dx      = params[segment + 2] - x1;
+        final double dy      = params[segment + 3] - y1;
+        final double length2 = dx * dx + dy * dy;
+        double t = length2 == 0 ? 0 : ((centerX - x1) * dx + (centerY - y1) * dy) / length2;
+        t = t < 0 ? 0 : (t > 1 ? 1 : t);
+        final double distX = x1 + t * dx - centerX;
+        final double distY = y1 + t * dy - centerY;
+        return distX * distX + distY * distY < radius * radius;
+    }
+
+    private int add(final byte type, final double p0, final double p1, final double p2, final double p3) {
+        final int id;
+        if (freeIds.isEmpty()) {
+            if (noOfIds == capacity) { grow(); }
+            id = noOfIds++;
+        } else {
+            id = freeIds.removeLast();
+        }
+        types[id] = type;
+        final int o = id * 4;
+        params[o]     = p0;
+        params[o + 1] = p1;
+        params[o + 2] = p2;
+        params[o + 3] = p3;
+        register(id);
+        size++;
+        return id;
+    }
+
+    private void set(final int id, final double p0, final double p1, final double p2, final double p3) {
+        final int c        = id * 4;
+        final int minCellX = cells[c];
+        final int minCellY = cells[c + 1];
+        final int maxCellX = cells[c + 2];
+        final int maxCellY = cells[c + 3];
+        params[c]     = p0;
+        params[c + 1] = p1;
+        params[c + 2] = p2;
+        params[c + 3] = p3;
+        updateCells(id);
+        if (cells[c] == minCellX && cells[c + 1] == minCellY && cells[c + 2] == maxCellX && cells[c + 3] == maxCellY) { return; }
+
+        // the object entered other cells, remove it from the old cells and add it to the new ones
+        cells[c]     = minCellX;
+        cells[c + 1] = minCellY;
+        cells[c + 2] = maxCellX;
+        cells[c + 3] = maxCellY;
+        unregister(id);
+        register(id);
+    }
+
+    private void register(final int id) {
+        updateCells(id);
+        if (isOversized(id)) {
+            oversized.add(id);
+        } else {
+            final int c = id * 4;
+            for (int cy = cells[c + 1] ; cy <= cells[c + 3] ; cy++) {
+                for (int cx = cells[c] ; cx <= cells[c + 2] ; cx++) { grid.insert(id, cx, cy); }
+            }
+        }
+    }
+
+    private void unregister(final int id) {
+        if (isOversized(id)) {
+            oversized.removeValue(id);
+        } else {
+            final int c = id * 4;
+            for (int cy = cells[c + 1] ; cy <= cells[c + 3] ; cy++) {
+                for (int cx = cells[c] ; cx <= cells[c + 2] ; cx++) { grid.remove(id, cx, cy); }
+            }
+        }
+    }
+
+    private void updateCells(final int id) {
+        final int o = id * 4;
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+        if (types[id] == CIRCLE) {
+            minX = params[o] - params[o + 2];
+            minY = params[o + 1] - params[o + 2];
+            maxX = params[o] + params[o + 2];
+            maxY = params[o + 1] + params[o + 2];
+        } else {
+            minX = Math.min(params[o], params[o + 2]);
+            minY = Math.min(params[o + 1], params[o + 3]);
+            maxX = Math.max(params[o], params[o + 2]);
+            maxY = Math.max(params[o + 1], params[o + 3]);
+        }
+        cells[o]     = grid.cell(minX);
+        cells[o + 1] = grid.cell(minY);
+        cells[o + 2] = grid.cell(maxX);
+        cells[o + 3] = grid.cell(maxY);
+    }
+
+    private boolean isOversized(final int id) {
+        final int c = id * 4;
+        return SpatialGrid.noOfCells(cells[c], cells[c + 1], cells[c + 2], cells[c + 3]) > MAX_CELLS_PER_OBJECT;
+    }
+
+    private byte checkId(final int id) {
+        if (!contains(id)) { throw new IllegalArgumentException("No object with id " + id); }
+        return types[id];
+    }
+
+    private void grow() {
+        capacity *= 2;
+        types  = Arrays.copyOf(types, capacity);
+        params = Arrays.copyOf(params, capacity * 4);
+        cells  = Arrays.copyOf(cells, capacity * 4);
+    }
+
+
+    // ******************** Inner Classes *************************************
+    /**
+     * Receives the colliding pairs of findCollisions(), it may move, add and remove objects of the
+     * world but must not call findCollisions() itself
+     */
+    @FunctionalInterface
+    public interface CollisionHandler {
+        void handle(int id1, int id2);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import java.util.Arrays;
+
+
+/**
+ * Reusable scratch space for the Bezier control points of a smooth curve through a series
+ * of points (the same control points that HelperFX.smoothPath() uses). The arrays only grow,
+ * computing the control points for a series of the same or a smaller size doesn't allocate.
+ * Segment i goes from point i to point i + 1. The points can either be passed in as arrays
+ * or collected in the buffer itself with addPoint() followed by compute().
+ * The x and y coordinates are solved in one pass with the TridiagonalSolver, closed curves
+ * use its cyclic variant.
+ */
+public class ControlPointBuffer {
+    private double[] firstX;
+    private double[] firstY;
+    private double[] secondX;
+    private double[] secondY;
+    private double[] sub;
+    private double[] diag;
+    private double[] sup;
+    private double[] rhsX;
+    private double[] rhsY;
+    private double[] scratch;
+    private int      noOfSegments;
+    private double[] pointsX;
+    private double[] pointsY;
+    private int      noOfPoints;
+
+
+    // ******************** Constructors **************************************
+    public ControlPointBuffer() {
+        this(16);
+    }
+    public ControlPointBuffer(final int initialCapacity) {
+        allocate(Math.max(1, initialCapacity));
+        noOfSegments = 0;
+        pointsX      = new double[Math.max(2, initialCapacity + 1)];
+        pointsY      = new double[pointsX.length];
+        noOfPoints   = 0;
+    }
+
+
+    // ******************** Methods *******************************************
+    public int getNoOfSegments() { return noOfSegments; }
+
+    public double getFirstX(final int segment) { return firstX[checkSegment(segment)]; }
+    public double getFirstY(final int segment) { return firstY[checkSegment(segment)]; }
+
+    public double getSecondX(final int segment) { return secondX[checkSegment(segment)]; }
+    public double getSecondY(final int segment) { return secondY[checkSegment(segment)]; }
+
+    public int getNoOfPoints() { return noOfPoints; }
+
+    public double getX(final int index) { return pointsX[checkPoint(index)]; }
+    public double getY(final int index) { return pointsY[checkPoint(index)]; }
+
+    /**
+     * Removes all collected points and control points
+     */
+    public void clear() {
+        noOfPoints   = 0;
+        noOfSegments = 0;
+    }
+
+    public void addPoint(final double x, final double y) {
+        if (noOfPoints == pointsX.length) {
+            pointsX = Arrays.copyOf(pointsX, pointsX.length + (pointsX.length >> 1));
+            pointsY = Arrays.copyOf(pointsY, pointsX.length);
+        }
+        pointsX[noOfPoints] = x;
+        pointsY[noOfPoints] = y;
+        noOfPoints++;
+    }
+
+    /**
+     * Computes the control points of the smooth curve through the points added with addPoint()
+     * @return the number of segments (number of points - 1)
+     */
+    public int compute() { return compute(pointsX, pointsY, noOfPoints); }
+
+    /**
+     * Computes the control points of the smooth curve through the given points
+     * @param xs   x coordinates of the points
+     * @param ys   y coordinates of the points
+     * @param size number of points to use from the arrays, at least 2
+     * @return the number of segments (size - 1)
+     */
+    public int compute(final double[] xs, final double[] ys, final int size) {
+        if (size < 2 || size > xs.length || size > ys.length) { throw new IllegalArgumentException("size must be between 2 and the length of the coordinate arrays"); }
+        final int n = size - 1;
+        if (n > firstX.length) { allocate(Math.max(n, firstX.length + (firstX.length >> 1))); }
+        noOfSegments = n;
+
+        if (n == 1) {
+            // special case: the Bezier curve should be a straight line
+            firstX[0]  = (2 * xs[0] + xs[1]) / 3;
+            firstY[0]  = (2 * ys[0] + ys[1]) / 3;
+            secondX[0] = 2 * firstX[0] - xs[0];
+            secondY[0] = 2 * firstY[0] - ys[0];
+            return n;
+        }
+
+        for (int i = 0 ; i < n ; i++) {
+            sub[i]  = 1;
+            diag[i] = 4;
+            sup[i]  = 1;
+        }
+        for (int i = 1 ; i < n - 1 ; i++) {
+            rhsX[i] = 4 * xs[i] + 2 * xs[i + 1];
+            rhsY[i] = 4 * ys[i] + 2 * ys[i + 1];
+        }
+        diag[0]     = 2;
+        rhsX[0]     = xs[0] + 2 * xs[1];
+        rhsY[0]     = ys[0] + 2 * ys[1];
+        diag[n - 1] = 3.5;
+        rhsX[n - 1] = (8 * xs[n - 1] + xs[n]) / 2.0;
+        rhsY[n - 1] = (8 * ys[n - 1] + ys[n]) / 2.0;
+        TridiagonalSolver.solve(sub, diag, sup, rhsX, rhsY, firstX, firstY, scratch, n);
+
+        for (int i = 0 ; i < n - 1 ; i++) {
+            secondX[i] = 2 * xs[i + 1] - firstX[i + 1];
+            secondY[i] = 2 * ys[i + 1] - firstY[i + 1];
+        }
+        secondX[n - 1] = (xs[n] + firstX[n - 1]) / 2;
+        secondY[n - 1] = (ys[n] + firstY[n - 1]) / 2;
+        return n;
+    }
+
+    /**
+     * Computes the control points of the closed smooth curve through the points added with addPoint()
+     * @return the number of segments (number of points)
+     */
+    public int computeClosed() { return computeClosed(pointsX, pointsY, noOfPoints); }
+    /**
+     * Computes the control points of the closed smooth curve (continuous first and second
+     * derivative at every point) through the given points, the last segment goes from the
+     * last point back to the first point, so the first point should not be repeated
+     * @param xs   x coordinates of the points
+     * @param ys   y coordinates of the points
+     * @param size number of points to use from the arrays, at least 3
+     * @return the number of segments (size)
+     */
+    public int computeClosed(final double[] xs, final double[] ys, final int size) {
+        if (size < 3 || size > xs.length || size > ys.length) { throw new IllegalArgumentException("size must be between 3 and the length of the coordinate arrays"); }
+        final int n = size;
+        if (n > firstX.length) { allocate(Math.max(n, firstX.length + (firstX.length >> 1))); }
+        noOfSegments = n;
+
+        // p1[i - 1] + 4 * p1[i] + p1[i + 1] = 4 * p[i] + 2 * p[i + 1] with wrap around
+        for (int i = 0 ; i < n ; i++) {
+            final int next = i == n - 1 ? 0 : i + 1;
+            sub[i]  = 1;
+            diag[i] = 4;
+            sup[i]  = 1;
+            rhsX[i] = 4 * xs[i] + 2 * xs[next];
+            rhsY[i] = 4 * ys[i] + 2 * ys[next];
+        }
+        TridiagonalSolver.solveCyclic(sub, diag, sup, 1, 1, rhsX, rhsY, firstX, firstY, scratch, n);
+
+        for (int i = 0 ; i < n ; i++) {
+            final int next = i == n - 1 ? 0 : i + 1;
+            secondX[i] = 2 * xs[next] - firstX[next];
+            secondY[i] = 2 * ys[next] - firstY[next];
+        }
+        return n;
+    }
+
+    private void allocate(final int capacity) {
+        firstX  = null == firstX ? new double[capacity] : Arrays.copyOf(firstX, capacity);
+        firstY  = null == firstY ? new double[capacity] : Arrays.copyOf(firstY, capacity);
+        secondX = null == secondX ? new double[capacity] : Arrays.copyOf(secondX, capacity);
+        secondY = null == secondY ? new double[capacity] : Arrays.copyOf(secondY, capacity);
+        sub     = new double[capacity];
+        diag    = new double[capacity];
+        sup     = new double[capacity];
+        rhsX    = new double[capacity];
+        rhsY    = new double[capacity];
+        scratch = new double[2 * capacity];
+    }
+
+    private int checkPoint(final int index) {
+        if (index < 0 || index >= noOfPoints) { throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + noOfPoints + " points"); }
+        return index;
+    }
+
+    private int checkSegment(final int segment) {
+        if (segment < 0 || segment >= noOfSegments) { throw new IndexOutOfBoundsException("Segment " + segment + " out of bounds for " + noOfSegments + " segments"); }
+        return segment;
+    }
+}
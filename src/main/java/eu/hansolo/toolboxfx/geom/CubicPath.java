@@ -0,0 +1,353 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import javafx.scene.shape.ClosePath;
+import javafx.scene.shape.CubicCurveTo;
+import javafx.scene.shape.HLineTo;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.QuadCurveTo;
+import javafx.scene.shape.VLineTo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * A single path of cubic Bezier segments stored in two double arrays. The path starts at
+ * point 0 and segment i uses the points 3 * i (start), 3 * i + 1 (first control point),
+ * 3 * i + 2 (second control point) and 3 * i + 3 (end). Lines and quadratic curves are
+ * stored as cubic segments. A position on the path is given by a parameter between 0 and
+ * the number of segments, the integer part is the segment and the fraction is t of the segment.
+ */
+public class CubicPath {
+    private double[] xs;
+    private double[] ys;
+    private int      noOfPoints;
+    private boolean  closed;
+
+
+    // ******************** Constructors **************************************
+    public CubicPath() {
+        this(16);
+    }
+    public CubicPath(final int initialNoOfSegments) {
+        if (initialNoOfSegments < 0) { throw new IllegalArgumentException("initialNoOfSegments must not be negative"); }
+        this.xs         = new double[initialNoOfSegments * 3 + 1];
+        this.ys         = new double[xs.length];
+        this.noOfPoints = 0;
+        this.closed     = false;
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Creates the smooth curve through the given points with the same control points as HelperFX.smoothPath()
+     * @param xs   x coordinates of the points
+     * @param ys   y coordinates of the points
+     * @param size number of points to use from the arrays, at least 2
+     * @return the smooth curve through the given points
+     */
+    public static CubicPath fromSmoothCurve(final double[] xs, final double[] ys, final int size) {
+        final ControlPointBuffer buffer = new ControlPointBuffer(size);
+        final int                n      = buffer.compute(xs, ys, size);
+        final CubicPath          path   = new CubicPath(n);
+        path.moveTo(xs[0], ys[0]);
+        for (int i = 0 ; i < n ; i++) { path.cubicTo(buffer.getFirstX(i), buffer.getFirstY(i), buffer.getSecondX(i), buffer.getSecondY(i), xs[i + 1], ys[i + 1]); }
+        return path;
+    }
+
+    /**
+     * Creates the closed smooth curve through the given points, the first point should not be repeated
+     * @param xs   x coordinates of the points
+     * @param ys   y coordinates of the points
+     * @param size number of points to use from the arrays, at least 3
+     * @return the closed smooth curve through the given points
+     */
+    public static CubicPath fromSmoothClosedCurve(final double[] xs, final double[] ys, final int size) {
+        final ControlPointBuffer buffer = new ControlPointBuffer(size);
+        final int                n      = buffer.computeClosed(xs, ys, size);
+        final CubicPath          path   = new CubicPath(n);
+        path.moveTo(xs[0], ys[0]);
+        for (int i = 0 ; i < n ; i++) {
+            final int next = i == n - 1 ? 0 : i + 1;
+            path.cubicTo(buffer.getFirstX(i), buffer.getFirstY(i), buffer.getSecondX(i), buffer.getSecondY(i), xs[next], ys[next]);
+        }
+        path.closed = true;
+        return path;
+    }
+
+    /**
+     * Creates the Catmull-Rom spline through the given points like HelperFX.subdividePoints(),
+     * or like HelperFX.subdividePointsRadial() if closed (the last point is expected to be equal to the first point)
+     * @param xs     x coordinates of the points
+     * @param ys     y coordinates of the points
+     * @param size   number of points to use from the arrays, at least 2 (3 if closed)
+     * @param closed true for a closed spline
+     * @return the Catmull-Rom spline as cubic Bezier segments
+     */
+    public static CubicPath fromCatmullRom(final double[] xs, final double[] ys, final int size, final boolean closed) {
+        if (size < (closed ? 3 : 2) || size > xs.length || size > ys.length) { throw new IllegalArgumentException("size must be between " + (closed ? 3 : 2) + " and the length of the coordinate arrays"); }
+        final CubicPath path = new CubicPath(size - 1);
+        path.moveTo(xs[0], ys[0]);
+        for (int i = 0 ; i < size - 1 ; i++) {
+            final int i0;
+            final int i3;
+            if (closed) {
+                i0 = i == 0 ? size - 2 : i - 1;
+                i3 = i == size - 2 ? 1 : i + 2;
+            } else {
+                i0 = i == 0 ? 0 : i - 1;
+                i3 = i + 2 == size ? i + 1 : i + 2;
+            }
+            path.cubicTo(xs[i] + (xs[i + 1] - xs[i0]) / 6.0, ys[i] + (ys[i + 1] - ys[i0]) / 6.0,
+                         xs[i + 1] - (xs[i3] - xs[i]) / 6.0, ys[i + 1] - (ys[i3] - ys[i]) / 6.0,
+                         xs[i + 1], ys[i + 1]);
+        }
+        path.closed = closed;
+        return path;
+    }
+
+    /**
+     * Converts the elements of the given path (e.g. the result of HelperFX.smoothPath()), only
+     * absolute MoveTo, LineTo, HLineTo, VLineTo, QuadCurveTo, CubicCurveTo and ClosePath elements
+     * of a single sub path are supported
+     * @param path the path to convert
+     * @return the path as cubic Bezier segments
+     */
+    public static CubicPath fromPath(final Path path) { return fromPathElements(path.getElements()); }
+    public static CubicPath fromPathElements(final List<PathElement> elements) {
+        final CubicPath cubicPath = new CubicPath(elements.size());
+        for (PathElement element : elements) {
+            if (element instanceof MoveTo && !cubicPath.isEmpty()) { throw new IllegalArgumentException("Only paths with a single sub path are supported, use subPathsOf()"); }
+            cubicPath.append(element);
+        }
+        return cubicPath;
+    }
+
+    /**
+     * Converts the elements of the given path into one CubicPath per sub path, e.g. for compound
+     * shapes like donuts. The same elements as in fromPath() are supported, a drawing element after
+     * a ClosePath starts a new sub path at the start of the closed one like in JavaFX. Sub paths
+     * without segments are skipped.
+     * @param path the path to convert
+     * @return the sub paths as cubic Bezier segments
+     */
+    public static List<CubicPath> subPathsOf(final Path path) { return subPathsOf(path.getElements()); }
+    public static List<CubicPath> subPathsOf(final List<PathElement> elements) {
+        final List<CubicPath> subPaths = new ArrayList<>();
+        CubicPath cubicPath = new CubicPath(4);
+        for (PathElement element : elements) {
+            if (element instanceof MoveTo || (cubicPath.isClosed() && !(element instanceof ClosePath))) {
+                final double startX = cubicPath.isEmpty() ? 0 : cubicPath.getStartX();
+                final double startY = cubicPath.isEmpty() ? 0 : cubicPath.getStartY();
+                if (cubicPath.getNoOfSegments() > 0) { subPaths.add(cubicPath); }
+                cubicPath = new CubicPath(4);
+                if (!(element instanceof MoveTo)) { cubicPath.moveTo(startX, startY); }
+            }
+            cubicPath.append(element);
+        }
+        if (cubicPath.getNoOfSegments() > 0) { subPaths.add(cubicPath); }
+        return subPaths;
+    }
+
+    public int getNoOfSegments() { return noOfPoints < 2 ? 0 : (noOfPoints - 1) / 3; }
+
+    public int getNoOfPoints() { return noOfPoints; }
+
+    public boolean isEmpty() { return noOfPoints == 0; }
+
+    public boolean isClosed() { return closed; }
+
+    /**
+     * Returns the x coordinate of the given point, see the class description for the layout
+     * @param index index of the point
+     * @return the x coordinate of the given point
+     */
+    public double getX(final int index) { return xs[checkIndex(index)]; }
+    public double getY(final int index) { return ys[checkIndex(index)]; }
+
+    public double getStartX() { return xs[checkIndex(0)]; }
+    public double getStartY() { return ys[checkIndex(0)]; }
+
+    public double getEndX() { return xs[checkIndex(noOfPoints - 1)]; }
+    public double getEndY() { return ys[checkIndex(noOfPoints - 1)]; }
+
+    public void moveTo(final double x, final double y) {
+        if (!isEmpty()) { throw new IllegalArgumentException("The path has already been started, call clear() first"); }
+        add(x, y);
+    }
+
+    public void lineTo(final double x, final double y) {
+        final double startX = getEndX();
+        final double startY = getEndY();
+        cubicTo(startX + (x - startX) / 3.0, startY + (y - startY) / 3.0, startX + (x - startX) * 2.0 / 3.0, startY + (y - startY) * 2.0 / 3.0, x, y);
+    }
+
+    public void quadTo(final double controlX, final double controlY, final double x, final double y) {
+        final double startX = getEndX();
+        final double startY = getEndY();
+        cubicTo(startX + (controlX - startX) * 2.0 / 3.0, startY + (controlY - startY) * 2.0 / 3.0, x + (controlX - x) * 2.0 / 3.0, y + (controlY - y) * 2.0 / 3.0, x, y);
+    }
+
+    public void cubicTo(final double controlX1, final double controlY1, final double controlX2, final double controlY2, final double x, final double y) {
+        if (isEmpty()) { throw new IllegalArgumentException("The path has to start with moveTo()"); }
+        if (closed) { throw new IllegalArgumentException("The path has already been closed"); }
+        add(controlX1, controlY1);
+        add(controlX2, controlY2);
+        add(x, y);
+    }
+
+    /**
+     * Closes the path with a line back to the start point if the end point is not equal to the start point
+     */
+    public void close() {
+        if (isEmpty() || closed) { return; }
+        if (getEndX() != getStartX() || getEndY() != getStartY()) { lineTo(getStartX(), getStartY()); }
+        closed = true;
+    }
+
+    public void clear() {
+        noOfPoints = 0;
+        closed     = false;
+    }
+
+    /**
+     * Writes the point at the given parameter into result[0] and result[1]
+     * @param parameter position on the path between 0 and the number of segments (clamped)
+     * @param result    receives the x and y coordinate
+     */
+    public void getPointAt(final double parameter, final double[] result) {
+        final int segment = segmentOf(parameter);
+        evaluate(segment, Math.max(0, Math.min(1, parameter - segment)), result);
+    }
+    public Point getPointAt(final double parameter) {
+        final double[] result = new double[2];
+        getPointAt(parameter, result);
+        return new Point(result[0], result[1]);
+    }
+
+    /**
+     * Writes the point at t of the given segment into result[0] and result[1]
+     * @param segment index of the segment
+     * @param t       parameter between 0 and 1
+     * @param result  receives the x and y coordinate
+     */
+    public void evaluate(final int segment, final double t, final double[] result) {
+        final int    o  = checkSegment(segment) * 3;
+        final double mt = 1 - t;
+        final double a  = mt * mt * mt;
+        final double b  = 3 * mt * mt * t;
+        final double c  = 3 * mt * t * t;
+        final double d  = t * t * t;
+        result[0] = a * xs[o] + b * xs[o + 1] + c * xs[o + 2] + d * xs[o + 3];
+        result[1] = a * ys[o] + b * ys[o + 1] + c * ys[o + 2] + d * ys[o + 3];
+    }
+
+    /**
+     * Writes the first derivative at t of the given segment into result[0] and result[1]
+     * @param segment index of the segment
+     * @param t       parameter between 0 and 1
+     * @param result  receives the derivative in x and y
+     */
+    public void derivative(final int segment, final double t, final double[] result) {
+        final int    o  = checkSegment(segment) * 3;
+        final double mt = 1 - t;
+        final double a  = 3 * mt * mt;
+        final double b  = 6 * mt * t;
+        final double c  = 3 * t * t;
+        result[0] = a * (xs[o + 1] - xs[o]) + b * (xs[o + 2] - xs[o + 1]) + c * (xs[o + 3] - xs[o + 2]);
+        result[1] = a * (ys[o + 1] - ys[o]) + b * (ys[o + 2] - ys[o + 1]) + c * (ys[o + 3] - ys[o + 2]);
+    }
+
+    /**
+     * Returns the segment of the given parameter, parameters outside of the path are clamped
+     * @param parameter position on the path
+     * @return the index of the segment
+     */
+    public int segmentOf(final double parameter) {
+        final int noOfSegments = getNoOfSegments();
+        if (noOfSegments == 0) { throw new IllegalArgumentException("The path has no segments"); }
+        if (parameter <= 0) { return 0; }
+        return Math.min((int) parameter, noOfSegments - 1);
+    }
+
+    /**
+     * Returns the bounds of all points including the control points, the curve lies within these bounds
+     * @return the bounds of the control polygon
+     */
+    public Bounds getControlBounds() {
+        if (isEmpty()) { return new Bounds(); }
+        double minX = xs[0], minY = ys[0], maxX = xs[0], maxY = ys[0];
+        for (int i = 1 ; i < noOfPoints ; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        return new Bounds(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    private void add(final double x, final double y) {
+        if (noOfPoints == xs.length) {
+            xs = Arrays.copyOf(xs, Math.max(4, xs.length + (xs.length >> 1)));
+            ys = Arrays.copyOf(ys, xs.length);
+        }
+        xs[noOfPoints] = x;
+        ys[noOfPoints] = y;
+        noOfPoints++;
+    }
+
+    private int checkIndex(final int index) {
+        if (index < 0 || index >= noOfPoints) { throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + noOfPoints + " points"); }
+        return index;
+    }
+
+    private int checkSegment(final int segment) {
+        if (segment < 0 || segment >= getNoOfSegments()) { throw new IndexOutOfBoundsException("Segment " + segment + " out of bounds for " + getNoOfSegments() + " segments"); }
+        return segment;
+    }
+
+    private void append(final PathElement element) {
+        if (!element.isAbsolute()) { throw new IllegalArgumentException("Relative path elements are not supported"); }
+        if (element instanceof MoveTo) {
+            moveTo(((MoveTo) element).getX(), ((MoveTo) element).getY());
+        } else if (element instanceof LineTo) {
+            lineTo(((LineTo) element).getX(), ((LineTo) element).getY());
+        } else if (element instanceof HLineTo) {
+            lineTo(((HLineTo) element).getX(), getEndY());
+        } else if (element instanceof VLineTo) {
+            lineTo(getEndX(), ((VLineTo) element).getY());
+        } else if (element instanceof QuadCurveTo) {
+            final QuadCurveTo quad = (QuadCurveTo) element;
+            quadTo(quad.getControlX(), quad.getControlY(), quad.getX(), quad.getY());
+        } else if (element instanceof CubicCurveTo) {
+            final CubicCurveTo curve = (CubicCurveTo) element;
+            cubicTo(curve.getControlX1(), curve.getControlY1(), curve.getControlX2(), curve.getControlY2(), curve.getX(), curve.getY());
+        } else if (element instanceof ClosePath) {
+            close();
+        } else {
+            throw new IllegalArgumentException("Unsupported path element " + element.getClass().getSimpleName());
+        }
+    }
+}
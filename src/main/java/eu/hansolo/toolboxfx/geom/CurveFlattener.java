@@ -0,0 +1,175 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+
+/**
+ * Adaptive subdivision of cubic Bezier curves and Catmull-Rom splines into line segments.
+ * A curve is split in half (de Casteljau) until both control points are closer to the chord
+ * than the given tolerance. Because the curve lies inside the convex hull of its control points
+ * it never deviates more than the tolerance from the resulting polyline, straight stretches
+ * end up as a single line while tight bends get as many points as they need.
+ */
+public final class CurveFlattener {
+    public  static final double DEFAULT_TOLERANCE = 0.25;
+    private static final int    MAX_DEPTH         = 16;
+
+
+    // ******************** Constructors **************************************
+    private CurveFlattener() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Adds the points of the flattened cubic Bezier curve to the given buffer, the start point is not added
+     * @param startX    x coordinate of the start point
+     * @param startY    y coordinate of the start point
+     * @param cp1X      x coordinate of the first control point
+     * @param cp1Y      y coordinate of the first control point
+     * @param cp2X      x coordinate of the second control point
+     * @param cp2Y      y coordinate of the second control point
+     * @param endX      x coordinate of the end point
+     * @param endY      y coordinate of the end point
+     * @param tolerance max distance between the curve and the polyline (e.g. in pixels)
+     * @param result    receives the points of the polyline, the last point is the end point
+     */
+    public static void flattenCubic(final double startX, final double startY, final double cp1X, final double cp1Y,
+                                    final double cp2X, final double cp2Y, final double endX, final double endY,
+                                    final double tolerance, final PointBuffer result) {
+        if (tolerance <= 0) { throw new IllegalArgumentException("tolerance must be positive"); }
+        final double tolerance2 = tolerance * tolerance;
+        // stack of curves that still have to be checked, the second half is pushed first
+        final double[] stack = new double[(MAX_DEPTH + 1) * 8];
+        final int[]    depth = new int[MAX_DEPTH + 1];
+        int top = 0;
+        push(stack, top, startX, startY, cp1X, cp1Y, cp2X, cp2Y, endX, endY);
+        depth[top++] = 0;
+        while (top > 0) {
+            top--;
+            final int    o  = top * 8;
+            final double x0 = stack[o],     y0 = stack[o + 1];
+            final double x1 = stack[o + 2], y1 = stack[o + 3];
+            final double x2 = stack[o + 4], y2 = stack[o + 5];
+            final double x3 = stack[o + 6], y3 = stack[o + 7];
+            final int    d  = depth[top];
+            if (d >= MAX_DEPTH || isFlat(x0, y0, x1, y1, x2, y2, x3, y3, tolerance2)) {
+                result.add(x3, y3);
+                continue;
+            }
+            // de Casteljau split at t = 0.5
+            final double x01   = (x0 + x1) * 0.5,   y01   = (y0 + y1) * 0.5;
+            final double x12   = (x1 + x2) * 0.5,   y12   = (y1 + y2) * 0.5;
+            final double x23   = (x2 + x3) * 0.5,   y23   = (y2 + y3) * 0.5;
+            final double x012  = (x01 + x12) * 0.5, y012  = (y01 + y12) * 0.5;
+            final double x123  = (x12 + x23) * 0.5, y123  = (y12 + y23) * 0.5;
+            final double xMid  = (x012 + x123) * 0.5;
+            final double yMid  = (y012 + y123) * 0.5;
+            push(stack, top, xMid, yMid, x123, y123, x23, y23, x3, y3);
+            depth[top++] = d + 1;
+            push(stack, top, x0, y0, x01, y01, x012, y012, xMid, yMid);
+            depth[top++] = d + 1;
+        }
+    }
+
+    /**
+     * Flattens the open Catmull-Rom spline through the given points that is also used by
+     * HelperFX.subdividePoints() (the first and last point are used twice as outer control points)
+     * @param xs        x coordinates of the points
+     * @param ys        y coordinates of the points
+     * @param size      number of points to use from the arrays
+     * @param tolerance max distance between the spline and the polyline (e.g. in pixels)
+     * @return the points of the polyline, starting with the first and ending with the last point
+     */
+    public static PointBuffer flattenCatmullRom(final double[] xs, final double[] ys, final int size, final double tolerance) {
+        return flattenCatmullRom(xs, ys, size, tolerance, false);
+    }
+
+    /**
+     * Flattens the closed Catmull-Rom spline through the given points that is also used by
+     * HelperFX.subdividePointsRadial(), the last point is expected to be equal to the first point
+     * @param xs        x coordinates of the points
+     * @param ys        y coordinates of the points
+     * @param size      number of points to use from the arrays
+     * @param tolerance max distance between the spline and the polyline (e.g. in pixels)
+     * @return the points of the polyline, starting with the first and ending with the last point
+     */
+    public static PointBuffer flattenCatmullRomClosed(final double[] xs, final double[] ys, final int size, final double tolerance) {
+        return flattenCatmullRom(xs, ys, size, tolerance, true);
+    }
+
+    private static PointBuffer flattenCatmullRom(final double[] xs, final double[] ys, final int size, final double tolerance, final boolean closed) {
+        if (size < 0 || size > xs.length || size > ys.length) { throw new IllegalArgumentException("size must be between 0 and the length of the coordinate arrays"); }
+        if (closed && size < 3) { throw new IllegalArgumentException("A closed spline needs at least 3 points"); }
+        final PointBuffer result = new PointBuffer(Math.max(16, size * 2));
+        if (size == 0) { return result; }
+        result.add(xs[0], ys[0]);
+        for (int i = 0 ; i < size - 1 ; i++) {
+            final int i0;
+            final int i3;
+            if (closed) {
+                i0 = i == 0 ? size - 2 : i - 1;
+                i3 = i == size - 2 ? 1 : i + 2;
+            } else {
+                i0 = i == 0 ? 0 : i - 1;
+                i3 = i + 2 == size ? i + 1 : i + 2;
+            }
+            // Bezier control points of the uniform Catmull-Rom segment from point i to point i + 1
+            final double cp1X = xs[i] + (xs[i + 1] - xs[i0]) / 6.0;
+            final double cp1Y = ys[i] + (ys[i + 1] - ys[i0]) / 6.0;
+            final double cp2X = xs[i + 1] - (xs[i3] - xs[i]) / 6.0;
+            final double cp2Y = ys[i + 1] - (ys[i3] - ys[i]) / 6.0;
+            flattenCubic(xs[i], ys[i], cp1X, cp1Y, cp2X, cp2Y, xs[i + 1], ys[i + 1], tolerance, result);
+        }
+        return result;
+    }
+
+    private static boolean isFlat(final double x0, final double y0, final double x1, final double y1,
+                                  final double x2, final double y2, final double x3, final double y3, final double tolerance2) {
+        final double dx      = x3 - x0;
+        final double dy      = y3 - y0;
+        final double length2 = dx * dx + dy * dy;
+        if (length2 == 0) {
+            // start and end are equal, check the distance of the control points to the start point
+            return (x1 - x0) * (x1 - x0) + (y1 - y0) * (y1 - y0) <= tolerance2 &&
+                   (x2 - x0) * (x2 - x0) + (y2 - y0) * (y2 - y0) <= tolerance2;
+        }
+        // squared distances of the control points to the line through start and end
+        final double d1 = (x1 - x0) * dy - (y1 - y0) * dx;
+        final double d2 = (x2 - x0) * dy - (y2 - y0) * dx;
+        if (d1 * d1 > tolerance2 * length2 || d2 * d2 > tolerance2 * length2) { return false; }
+        // control points that lie on the line but outside of the chord produce a cusp or loop
+        final double t1 = (x1 - x0) * dx + (y1 - y0) * dy;
+        final double t2 = (x2 - x0) * dx + (y2 - y0) * dy;
+        final double margin = Math.sqrt(tolerance2 * length2);
+        return t1 >= -margin && t1 <= length2 + margin && t2 >= -margin && t2 <= length2 + margin;
+    }
+
+    private static void push(final double[] stack, final int index, final double x0, final double y0, final double x1, final double y1,
+                             final double x2, final double y2, final double x3, final double y3) {
+        final int o = index * 8;
+        stack[o]     = x0;
+        stack[o + 1] = y0;
+        stack[o + 2] = x1;
+        stack[o + 3] = y1;
+        stack[o + 4] = x2;
+        stack[o + 5] = y2;
+        stack[o + 6] = x3;
+        stack[o + 7] = y3;
+    }
+}
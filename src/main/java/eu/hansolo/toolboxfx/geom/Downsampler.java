@@ -0,0 +1,150 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+
+/**
+ * Reduces long series to a number of points that can actually be seen, e.g. twice
+ * the width of the chart in pixels. Both methods return the indices of the points
+ * to keep in ascending order, the first and the last point are always kept. Series that
+ * are not longer than the threshold are returned completely, a threshold below the
+ * minimum of the method throws an IllegalArgumentException.
+ * Largest-Triangle-Three-Buckets keeps the overall shape with one point per bucket,
+ * min/max keeps the extreme values of each bucket (e.g. spikes) with two points per bucket.
+ */
+public final class Downsampler {
+
+    // ******************** Constructors **************************************
+    private Downsampler() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Largest-Triangle-Three-Buckets for values at equidistant x positions (x = index)
+     * @param values    the values of the series
+     * @param threshold max number of points to keep, at least 3 (first, last and one point in between)
+     * @return the indices of the points to keep
+     */
+    public static int[] lttb(final double[] values, final int threshold) { return lttb(null, values, values.length, threshold); }
+    /**
+     * Largest-Triangle-Three-Buckets, picks the point of each bucket that forms the largest
+     * triangle with the point picked in the previous bucket and the average of the next bucket
+     * @param xs        x coordinates of the points in ascending order or null to use the index
+     * @param ys        y coordinates of the points
+     * @param size      number of points to use from the arrays
+     * @param threshold max number of points to keep, at least 3 (first, last and one point in between)
+     * @return the indices of the points to keep
+     */
+    public static int[] lttb(final double[] xs, final double[] ys, final int size, final int threshold) {
+        checkSize(xs, ys, size);
+        if (threshold < 3) { throw new IllegalArgumentException("threshold must be at least 3"); }
+        if (threshold >= size) { return all(size); }
+
+        final int[]  indices = new int[threshold];
+        final double every   = (double) (size - 2) / (threshold - 2);
+        int a     = 0;
+        int count = 0;
+        indices[count++] = a;
+        for (int i = 0 ; i < threshold - 2 ; i++) {
+            // average of the next bucket
+            final int avgFrom = (int) Math.floor((i + 1) * every) + 1;
+            final int avgTo   = Math.min((int) Math.floor((i + 2) * every) + 1, size);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = avgFrom ; j < avgTo ; j++) {
+                avgX += x(xs, j);
+                avgY += ys[j];
+            }
+            final int avgLength = avgTo - avgFrom;
+            avgX /= avgLength;
+            avgY /= avgLength;
+
+            // point of the current bucket that forms the largest triangle
+            final int    from    = (int) Math.floor(i * every) + 1;
+            final int    to      = (int) Math.floor((i + 1) * every) + 1;
+            final double aX      = x(xs, a);
+            final double aY      = ys[a];
+            double       maxArea = -1;
+            int          next    = from;
+            for (int j = from ; j < to ; j++) {
+                final double area = Math.abs((aX - avgX) * (ys[j] - aY) - (aX - x(xs, j)) * (avgY - aY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next    = j;
+                }
+            }
+            indices[count++] = next;
+            a = next;
+        }
+        indices[count] = size - 1;
+        return indices;
+    }
+
+    /**
+     * Min/max per bucket for values at equidistant x positions (x = index)
+     * @param values    the values of the series
+     * @param threshold max number of points to keep, at least 4 (first, last and min/max of one bucket)
+     * @return the indices of the points to keep
+     */
+    public static int[] minMax(final double[] values, final int threshold) { return minMax(values, values.length, threshold); }
+    /**
+     * Keeps the smallest and the largest value of each bucket in the order they appear in the series
+     * @param ys        the values of the series
+     * @param size      number of values to use from the array
+     * @param threshold max number of points to keep, at least 4 (first, last and min/max of one bucket)
+     * @return the indices of the points to keep
+     */
+    public static int[] minMax(final double[] ys, final int size, final int threshold) {
+        checkSize(null, ys, size);
+        if (threshold < 4) { throw new IllegalArgumentException("threshold must be at least 4"); }
+        if (threshold >= size) { return all(size); }
+
+        final int     noOfBuckets = (threshold - 2) / 2;
+        final double  every       = (double) (size - 2) / noOfBuckets;
+        final IntList indices     = new IntList(threshold);
+        indices.add(0);
+        for (int b = 0 ; b < noOfBuckets ; b++) {
+            final int from = (int) Math.floor(b * every) + 1;
+            final int to   = Math.min((int) Math.floor((b + 1) * every) + 1, size - 1);
+            if (from >= to) { continue; }
+            int min = from;
+            int max = from;
+            for (int j = from + 1 ; j < to ; j++) {
+                if (ys[j] < ys[min]) { min = j; }
+                if (ys[j] > ys[max]) { max = j; }
+            }
+            indices.add(Math.min(min, max));
+            if (min != max) { indices.add(Math.max(min, max)); }
+        }
+        indices.add(size - 1);
+        return indices.toArray();
+    }
+
+    private static double x(final double[] xs, final int index) { return null == xs ? index : xs[index]; }
+
+    private static int[] all(final int size) {
+        final int[] indices = new int[size];
+        for (int i = 0 ; i < size ; i++) { indices[i] = i; }
+        return indices;
+    }
+
+    private static void checkSize(final double[] xs, final double[] ys, final int size) {
+        if (size < 0 || size > ys.length || (null != xs && size > xs.length)) { throw new IllegalArgumentException("size must be between 0 and the length of the coordinate arrays"); }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.scene.Node;
+import javafx.scene.shape.CubicCurveTo;
+import javafx.scene.shape.HLineTo;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.QuadCurveTo;
+import javafx.scene.shape.VLineTo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Polyline of a shape with curved outline (e.g. the result of HelperFX.smoothPath() or
+ * HelperFX.createSmoothedConvexHull()) that is flattened once within a given tolerance and
+ * prepared for hit testing. Point in shape tests use a PreparedPolygon of the polyline (open
+ * paths are closed implicitly like JavaFX does when filling them), distance to stroke tests only
+ * check the line segments in the grid cells around the point. Paths with several sub paths
+ * (e.g. donuts) are supported, the sub paths are combined with the even-odd rule.
+ * FlattenedShape.of() caches the flattened shape in the properties of the node and listens to the
+ * path elements and their coordinates (or the points of the polygon), it is only flattened again
+ * after one of them or the tolerance changed. It has to be called on the JavaFX application thread.
+ * A flattened shape is immutable and can be used from different threads.
+ */
+public class FlattenedShape {
+    private static final String          PROPERTY_KEY = "eu.hansolo.toolboxfx.geom.FlattenedShape";
+    private        final double[]        xs;
+    private        final double[]        ys;
+    private        final int             noOfPoints;
+    private        final int[]           nexts;
+    private        final int             noOfSegments;
+    private        final int             noOfSubPaths;
+    private        final boolean         closed;
+    private        final double          tolerance;
+    private        final PreparedPolygon polygon;
+    private        final SpatialGrid     grid;
+
+
+    // ******************** Constructors **************************************
+    public FlattenedShape(final CubicPath path) {
+        this(path, CurveFlattener.DEFAULT_TOLERANCE);
+    }
+    public FlattenedShape(final CubicPath path, final double tolerance) {
+        this(flatten(path, tolerance), path.isClosed(), tolerance);
+    }
+    public FlattenedShape(final List<Point> points, final boolean closed) {
+        this(new PointBuffer(points), closed, 0);
+    }
+    public FlattenedShape(final PointBuffer points, final boolean closed) {
+        this(points, closed, 0);
+    }
+    private FlattenedShape(final PointBuffer points, final boolean closed, final double tolerance) {
+        this(points, new int[] { points.size() }, new boolean[] { closed }, tolerance);
+    }
+    /**
+     * @param points      the points of all sub paths
+     * @param ends        the end index (exclusive) of each sub path in ascending order
+     * @param closedFlags true for each sub path that is closed
+     * @param tolerance   the tolerance the points were flattened with
+     */
+    private FlattenedShape(final PointBuffer points, final int[] ends, final boolean[] closedFlags, final double tolerance) {
+        this.xs           = points.getPointsX();
+        this.ys           = points.getPointsY();
+        this.noOfPoints   = points.size();
+        this.noOfSubPaths = ends.length;
+        this.tolerance    = tolerance;
+        this.polygon      = new PreparedPolygon(xs, ys, ends);
+
+        // the segment i goes from point i to point nexts[i], the last point of an open sub path starts no segment
+        this.nexts = new int[noOfPoints];
+        int     segments  = 0;
+        int     start     = 0;
+        boolean allClosed = noOfSubPaths > 0;
+        for (int subPath = 0 ; subPath < noOfSubPaths ; subPath++) {
+            final int end = ends[subPath];
+            for (int i = start ; i < end ; i++) {
+                nexts[i] = i + 1 < end ? i + 1 : (closedFlags[subPath] && end - start > 1 ? start : -1);
+                if (nexts[i] >= 0) { segments++; }
+            }
+            allClosed &= closedFlags[subPath];
+            start = end;
+        }
+        this.noOfSegments = segments;
+        this.closed       = allClosed;
+
+        this.grid = noOfSegments == 0 ? null : new SpatialGrid(cellSize());
+        for (int i = 0 ; i < noOfPoints ; i++) {
+            final int next = nexts[i];
+            if (next < 0) { continue; }
+            grid.insert(i, Math.min(xs[i], xs[next]), Math.min(ys[i], ys[next]), Math.max(xs[i], xs[next]), Math.max(ys[i], ys[next]));
+        }
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Returns the flattened shape of the given path, the result is cached in the properties of the path
+     * @param path      the path to flatten, may contain several sub paths
+     * @param tolerance max distance between the curves and the polyline
+     * @return the flattened shape of the given path
+     */
+    public static FlattenedShape of(final Path path, final double tolerance) {
+        final Cache cache = Cache.of(path, path.getElements());
+        if (!cache.isValid(tolerance)) {
+            cache.observe(path.getElements());
+            cache.update(flatten(CubicPath.subPathsOf(path), tolerance));
+        }
+        return cache.shape;
+    }
+    /**
+     * Returns the flattened shape of the given polygon, the result is cached in the properties of the polygon
+     * @param polygon the polygon (e.g. with the points of HelperFX.createSmoothedConvexHull())
+     * @return the flattened shape of the given polygon
+     */
+    public static FlattenedShape of(final Polygon polygon) {
+        final Cache cache = Cache.of(polygon, polygon.getPoints());
+        if (!cache.isValid(0)) { cache.update(new FlattenedShape(PointBuffer.fromPolygon(polygon), true, 0)); }
+        return cache.shape;
+    }
+
+    public int getNoOfPoints() { return noOfPoints; }
+
+    public int getNoOfSegments() { return noOfSegments; }
+
+    public int getNoOfSubPaths() { return noOfSubPaths; }
+
+    public double getX(final int index) { return xs[checkIndex(index)]; }
+    public double getY(final int index) { return ys[checkIndex(index)]; }
+
+    /**
+     * @return true if all sub paths are closed
+     */
+    public boolean isClosed() { return closed; }
+
+    public double getTolerance() { return tolerance; }
+
+    public Bounds getBounds() { return polygon.getBounds(); }
+
+    /**
+     * Checks if the given point is inside of the area of the shape (even-odd rule)
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @return true if the point is inside of the shape
+     */
+    public boolean contains(final double x, final double y) { return polygon.contains(x, y); }
+    public boolean contains(final Point point) { return polygon.contains(point.getX(), point.getY()); }
+
+    /**
+     * Checks if the given point is not farther away from the outline than the given distance,
+     * e.g. half of the stroke width plus a few pixels to make thin lines easier to hit
+     * @param x           x coordinate of the point
+     * @param y           y coordinate of the point
+     * @param maxDistance max distance to the outline
+     * @return true if the point is within the given distance of the outline
+     */
+    public boolean isNearStroke(final double x, final double y, final double maxDistance) {
+        if (null == grid || maxDistance < 0) { return false; }
+        final double maxDistance2 = maxDistance * maxDistance;
+        final int    minCellX     = grid.cell(x - maxDistance);
+        final int    minCellY     = grid.cell(y - maxDistance);
+        final int    maxCellX     = grid.cell(x + maxDistance);
+        final int    maxCellY     = grid.cell(y + maxDistance);
+        if (SpatialGrid.noOfCells(minCellX, minCellY, maxCellX, maxCellY) > getNoOfSegments()) { return distanceToStroke(x, y) <= maxDistance; }
+        for (int cellY = minCellY ; cellY <= maxCellY ; cellY++) {
+            for (int cellX = minCellX ; cellX <= maxCellX ; cellX++) {
+                final IntList segments = grid.get(cellX, cellY);
+                if (null == segments) { continue; }
+                for (int i = 0 ; i < segments.size() ; i++) {
+                    if (distanceToSegment2(segments.get(i), x, y) <= maxDistance2) { return true; }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the distance of the given point to the outline of the shape
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @return the distance to the nearest line segment of the outline or infinity if the shape has no segments
+     */
+    public double distanceToStroke(final double x, final double y) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0 ; i < noOfPoints ; i++) {
+            if (nexts[i] >= 0) { min = Math.min(min, distanceToSegment2(i, x, y)); }
+        }
+        return Math.sqrt(min);
+    }
+
+    /**
+     * @return the points of all sub paths
+     */
+    public PointBuffer toPointBuffer() {
+        final PointBuffer buffer = new PointBuffer(noOfPoints);
+        for (int i = 0 ; i < noOfPoints ; i++) { buffer.add(xs[i], ys[i]); }
+        return buffer;
+    }
+
+    private double distanceToSegment2(final int segment, final double x, final double y) {
+        final int    next    = nexts[segment];
+        final double dx      = xs[next] - xs[segment];
+        final double dy      = ys[next] - ys[segment];
+        final double length2 = dx * dx + dy * dy;
+        double t = length2 == 0 ? 0 : ((x - xs[segment]) * dx + (y - ys[segment]) * dy) / length2;
+        t = Math.max(0, Math.min(1, t));
+        final double px = xs[segment] + t * dx - x;
+        final double py = ys[segment] + t * dy - y;
+        return px * px + py * py;
+    }
+
+    private double cellSize() {
+        // about the average segment length but not less than 1/256 of the extent to limit the number of cells
+        double length = 0;
+        for (int i = 0 ; i < noOfPoints ; i++) {
+            final int next = nexts[i];
+            if (next >= 0) { length += Math.abs(xs[next] - xs[i]) + Math.abs(ys[next] - ys[i]); }
+        }
+        final Bounds bounds = polygon.getBounds();
+        final double extent = Math.max(bounds.getWidth(), bounds.getHeight());
+        final double size   = Math.max(length / Math.max(1, noOfSegments), extent / 256);
+        return size > 0 && Double.isFinite(size) ? size : 1;
+    }
+
+    private int checkIndex(final int index) {
+        if (index < 0 || index >= noOfPoints) { throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + noOfPoints + " points"); }
+        return index;
+    }
+
+    /**
+     * Flattens the given path into a polyline, the start point of a closed path is not repeated at the end
+     * @param path      the path to flatten
+     * @param tolerance max distance between the curves and the polyline
+     * @return the points of the polyline
+     */
+    static PointBuffer flatten(final CubicPath path, final double tolerance) {
+        final PointBuffer points = new PointBuffer(Math.max(16, path.getNoOfPoints()));
+        if (path.isEmpty()) { return points; }
+        points.add(path.getStartX(), path.getStartY());
+        for (int segment = 0 ; segment < path.getNoOfSegments() ; segment++) {
+            final int o = segment * 3;
+            CurveFlattener.flattenCubic(path.getX(o), path.getY(o), path.getX(o + 1), path.getY(o + 1),
+                                        path.getX(o + 2), path.getY(o + 2), path.getX(o + 3), path.getY(o + 3), tolerance, points);
+        }
+        // the closing segment is implicit
+        if (path.isClosed() && points.size() > 1 && points.getX(points.size() - 1) == points.getX(0) && points.getY(points.size() - 1) == points.getY(0)) {
+            return points.view(0, points.size() - 1).copy();
+        }
+        return points;
+    }
+
+    private static FlattenedShape flatten(final List<CubicPath> subPaths, final double tolerance) {
+        final PointBuffer points      = new PointBuffer();
+        final int[]       ends        = new int[subPaths.size()];
+        final boolean[]   closedFlags = new boolean[subPaths.size()];
+        for (int i = 0 ; i < subPaths.size() ; i++) {
+            points.addAll(flatten(subPaths.get(i), tolerance));
+            ends[i]        = points.size();
+            closedFlags[i] = subPaths.get(i).isClosed();
+        }
+        return new FlattenedShape(points, ends, closedFlags, tolerance);
+    }
+
+
+    // ******************** Inner Classes *************************************
+    /**
+     * Flattened shape in the properties of a node, it is invalidated by listeners on the path elements and
+     * their coordinates (or on the points of a polygon), so looking it up doesn't need to scan the node
+     */
+    private static final class Cache implements InvalidationListener {
+        private final List<PathElement> observedElements = new ArrayList<>();
+        private       FlattenedShape    shape;
+        private       boolean           valid;
+
+
+        static Cache of(final Node node, final Observable source) {
+            final Object cached = node.getProperties().get(PROPERTY_KEY);
+            if (cached instanceof Cache) { return (Cache) cached; }
+            final Cache cache = new Cache();
+            source.addListener(cache);
+            node.getProperties().put(PROPERTY_KEY, cache);
+            return cache;
+        }
+
+        @Override public void invalidated(final Observable observable) { valid = false; }
+
+        boolean isValid(final double tolerance) { return valid && shape.tolerance == tolerance; }
+
+        void update(final FlattenedShape shape) {
+            this.shape = shape;
+            this.valid = true;
+        }
+
+        /**
+         * Moves the listeners from the coordinates of the previous elements to the coordinates of the given elements
+         */
+        void observe(final List<PathElement> elements) {
+            for (PathElement element : observedElements) {
+                for (Observable coordinate : coordinatesOf(element)) { coordinate.removeListener(this); }
+            }
+            observedElements.clear();
+            observedElements.addAll(elements);
+            for (PathElement element : observedElements) {
+                for (Observable coordinate : coordinatesOf(element)) { coordinate.addListener(this); }
+            }
+        }
+
+        private static Observable[] coordinatesOf(final PathElement element) {
+            if (element instanceof MoveTo) {
+                final MoveTo moveTo = (MoveTo) element;
+                return new Observable[] { moveTo.absoluteProperty(), moveTo.xProperty(), moveTo.yProperty() };
+            } else if (element instanceof LineTo) {
+                final LineTo lineTo = (LineTo) element;
+                return new Observable[] { lineTo.absoluteProperty(), lineTo.xProperty(), lineTo.yProperty() };
+            } else if (element instanceof HLineTo) {
+                return new Observable[] { element.absoluteProperty(), ((HLineTo) element).xProperty() };
+            } else if (element instanceof VLineTo) {
+                return new Observable[] { element.absoluteProperty(), ((VLineTo) element).yProperty() };
+            } else if (element instanceof QuadCurveTo) {
+                final QuadCurveTo quad = (QuadCurveTo) element;
+                return new Observable[] { quad.absoluteProperty(), quad.controlXProperty(), quad.controlYProperty(), quad.xProperty(), quad.yProperty() };
+            } else if (element instanceof CubicCurveTo) {
+                final CubicCurveTo curve = (CubicCurveTo) element;
+                return new Observable[] { curve.absoluteProperty(), curve.controlX1Property(), curve.controlY1Property(), curve.controlX2Property(), curve.controlY2Property(), curve.xProperty(), curve.yProperty() };
+            } else {
+                return new Observable[] { element.absoluteProperty() };
+            }
+        }
+    }
+}
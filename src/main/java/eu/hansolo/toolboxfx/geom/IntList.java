@@ -0,0 +1,77 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import java.util.Arrays;
+
+
+/**
+ * Growable list of primitive int values
+ */
+class IntList {
+    private int[] values;
+    private int   size;
+
+
+    // ******************** Constructors **************************************
+    IntList() {
+        this(8);
+    }
+    IntList(final int initialCapacity) {
+        values = new int[Math.max(1, initialCapacity)];
+        size   = 0;
+    }
+
+
+    // ******************** Methods *******************************************
+    int size() { return size; }
+
+    boolean isEmpty() { return size == 0; }
+
+    int get(final int index) { return values[index]; }
+
+    void set(final int index, final int value) { values[index] = value; }
+
+    void add(final int value) {
+        if (size == values.length) { values = Arrays.copyOf(values, size << 1); }
+        values[size++] = value;
+    }
+
+    int removeLast() { return values[--size]; }
+
+    /**
+     * Removes the first occurrence of the given value by moving the last value in it's place,
+     * the order of the remaining values will not be preserved
+     * @param value the value to remove
+     * @return true if the value was found and removed
+     */
+    boolean removeValue(final int value) {
+        for (int i = 0 ; i < size ; i++) {
+            if (values[i] == value) {
+                values[i] = values[--size];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clear() { size = 0; }
+
+    int[] toArray() { return Arrays.copyOf(values, size); }
+}
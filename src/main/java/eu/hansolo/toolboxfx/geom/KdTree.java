@@ -0,0 +1,503 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import java.util.List;
+
+
+/**
+ * A 2D k-d tree for nearest neighbour, k nearest neighbours, radius and range queries.
+ * The tree is kept in primitive arrays (balanced, implicit layout) and the queries
+ * don't allocate any objects. All queries return the index of the point in the list
+ * or arrays the tree was built from, -1 means no point was found.
+ * Points can be removed from the tree which makes it usable for nearest neighbour
+ * chains where each visited point has to be excluded from further queries.
+ * Queries share internal scratch buffers, so a tree must not be queried from
+ * different threads at the same time.
+ */
+public class KdTree {
+    public  static final int       NONE = -1;
+    private              int       size;
+    private              int       noOfRemainingPoints;
+    private              double[]  xs;
+    private              double[]  ys;
+    private              int[]     indices;
+    private              int[]     positions;
+    private              boolean[] splitX;
+    private              boolean[] removed;
+    private              int[]     alive;
+    private              int[]     stackLo;
+    private              int[]     stackHi;
+    private              double[]  stackDist;
+    private              int[]     heapIndices;
+    private              double[]  heapDistances;
+
+
+    // ******************** Constructors **************************************
+    public KdTree() {
+        this(new double[0], new double[0], 0);
+    }
+    public KdTree(final List<? extends Point> points) {
+        rebuild(points);
+    }
+    public KdTree(final double[] xs, final double[] ys) {
+        this(xs, ys, Math.min(xs.length, ys.length));
+    }
+    public KdTree(final double[] xs, final double[] ys, final int size) {
+        rebuild(xs, ys, size);
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Returns the number of points in the tree that have not been removed
+     * @return the number of points that have not been removed
+     */
+    public int size() { return noOfRemainingPoints; }
+
+    public boolean isEmpty() { return noOfRemainingPoints == 0; }
+
+    public double getX(final int index) { return xs[positions[index]]; }
+
+    public double getY(final int index) { return ys[positions[index]]; }
+
+    /**
+     * Rebuilds the tree from the given points, the internal arrays will be reused if they are large enough
+     * @param points the points to build the tree from
+     */
+    public void rebuild(final List<? extends Point> points) {
+        final int size = points.size();
+        ensureCapacity(size);
+        for (int i = 0 ; i < size ; i++) {
+            final Point p = points.get(i);
+            xs[i]      = p.getX();
+            ys[i]      = p.getY();
+            indices[i] = i;
+        }
+        build(size);
+    }
+    public void rebuild(final double[] xs, final double[] ys) { rebuild(xs, ys, Math.min(xs.length, ys.length)); }
+    /**
+     * Rebuilds the tree from the first size coordinates of the given arrays, the internal arrays
+     * will be reused if they are large enough
+     * @param xs   x coordinates of the points
+     * @param ys   y coordinates of the points
+     * @param size number of points to use from the arrays
+     */
+    public void rebuild(final double[] xs, final double[] ys, final int size) {
+        if (size < 0 || size > xs.length || size > ys.length) { throw new IllegalArgumentException("size must be between 0 and the length of the coordinate arrays"); }
+        ensureCapacity(size);
+        System.arraycopy(xs, 0, this.xs, 0, size);
+        System.arraycopy(ys, 0, this.ys, 0, size);
+        for (int i = 0 ; i < size ; i++) { indices[i] = i; }
+        build(size);
+    }
+
+    /**
+     * Removes the point with the given index from the tree, it will be ignored by all queries
+     * until the tree is rebuilt or restored
+     * @param index the index of the point to remove
+     * @return true if the point was removed, false if it was already removed before
+     */
+    public boolean remove(final int index) {
+        final int position = positions[index];
+        if (removed[position]) { return false; }
+        removed[position] = true;
+        noOfRemainingPoints--;
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            final int m = (lo + hi) >>> 1;
+            alive[m]--;
+            if (m == position) { break; }
+            if (position < m) {
+                hi = m;
+            } else {
+                lo = m + 1;
+            }
+        }
+        return true;
+    }
+
+    public boolean isRemoved(final int index) { return removed[positions[index]]; }
+
+    /**
+     * Restores all removed points without rebuilding the tree
+     */
+    public void restoreAll() {
+        for (int i = 0 ; i < size ; i++) { removed[i] = false; }
+        countAlive(0, size);
+        noOfRemainingPoints = size;
+    }
+
+    public int nearest(final Point point) { return nearest(point.getX(), point.getY()); }
+    /**
+     * Returns the index of the point nearest to the given coordinates. If several points have
+     * the same distance the one with the smallest index will be returned.
+     * @param x x coordinate of the query point
+     * @param y y coordinate of the query point
+     * @return index of the nearest point or -1 if the tree is empty
+     */
+    public int nearest(final double x, final double y) { return nearest(x, y, Double.POSITIVE_INFINITY, true); }
+
+    public int nearestWithinRadius(final Point point, final double radius) { return nearestWithinRadius(point.getX(), point.getY(), radius); }
+    /**
+     * Returns the index of the point nearest to the given coordinates with a distance smaller than radius
+     * @param x      x coordinate of the query point
+     * @param y      y coordinate of the query point
+     * @param radius the search radius
+     * @return index of the nearest point within the radius or -1 if there is no such point
+     */
+    public int nearestWithinRadius(final double x, final double y, final double radius) { return nearest(x, y, radius * radius, false); }
+
+    /**
+     * Finds the k nearest points to the given coordinates and writes their indices sorted by
+     * ascending distance into result.
+     * @param x      x coordinate of the query point
+     * @param y      y coordinate of the query point
+     * @param k      number of points to find
+     * @param result array that will receive the indices
+     * @return the number of indices written to result
+     */
+    public int nearest(final double x, final double y, final int k, final int[] result) {
+        final int noOfNeighbors = Math.min(Math.min(k, noOfRemainingPoints), result.length);
+        if (noOfNeighbors <= 0) { return 0; }
+        if (null == heapIndices || heapIndices.length < noOfNeighbors) {
+            heapIndices   = new int[noOfNeighbors];
+            heapDistances = new double[noOfNeighbors];
+        }
+
+        int heapSize = 0;
+        int top      = 0;
+        stackLo[0]   = 0;
+        stackHi[0]   = size;
+        stackDist[0] = 0;
+        while (top >= 0) {
+            final int    lo    = stackLo[top];
+            final int    hi    = stackHi[top];
+            final double bound = stackDist[top];
+            top--;
+            if (heapSize == noOfNeighbors && bound > heapDistances[0]) { continue; }
+
+            final int    m     = (lo + hi) >>> 1;
+            final double dx    = x - xs[m];
+            final double dy    = y - ys[m];
+            final double dist  = dx * dx + dy * dy;
+            final int    index = indices[m];
+            if (removed[m]) {
+                // Skip removed point but visit its children
+            } else if (heapSize < noOfNeighbors) {
+                heapSize = heapPush(heapSize, index, dist);
+            } else if (isCloser(dist, index, heapDistances[0], heapIndices[0])) {
+                heapReplaceTop(heapSize, index, dist);
+            }
+
+            final double diff = splitX[m] ? dx : dy;
+            top = pushChildren(top, lo, m, hi, diff, bound);
+        }
+
+        // Sort result by ascending distance
+        for (int i = heapSize - 1 ; i >= 0 ; i--) {
+            result[i] = heapIndices[0];
+            heapIndices[0]   = heapIndices[i];
+            heapDistances[0] = heapDistances[i];
+            siftDown(0, i);
+        }
+        return heapSize;
+    }
+
+    /**
+     * Finds all points with a distance smaller or equal to radius from the given coordinates.
+     * The result array will be filled with up to result.length indices in no particular order.
+     * @param x      x coordinate of the query point
+     * @param y      y coordinate of the query point
+     * @param radius the search radius
+     * @param result array that will receive the indices
+     * @return the number of points within the radius (might be larger than result.length)
+     */
+    public int withinRadius(final double x, final double y, final double radius, final int[] result) {
+        if (noOfRemainingPoints == 0) { return 0; }
+        final double radiusSquare = radius * radius;
+        int count = 0;
+        int top   = 0;
+        stackLo[0] = 0;
+        stackHi[0] = size;
+        while (top >= 0) {
+            final int lo = stackLo[top];
+            final int hi = stackHi[top];
+            top--;
+
+            final int    m  = (lo + hi) >>> 1;
+            final double dx = x - xs[m];
+            final double dy = y - ys[m];
+            if (!removed[m] && dx * dx + dy * dy <= radiusSquare) {
+                if (count < result.length) { result[count] = indices[m]; }
+                count++;
+            }
+
+            final double diff = splitX[m] ? dx : dy;
+            if (diff - radius <= 0) { top = push(top, lo, m, 0); }
+            if (diff + radius >= 0) { top = push(top, m + 1, hi, 0); }
+        }
+        return count;
+    }
+
+    public int range(final Bounds bounds, final int[] result) { return range(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), result); }
+    /**
+     * Finds all points inside of the given rectangle (borders included).
+     * The result array will be filled with up to result.length indices in no particular order.
+     * @param minX   left border of the rectangle
+     * @param minY   top border of the rectangle
+     * @param maxX   right border of the rectangle
+     * @param maxY   bottom border of the rectangle
+     * @param result array that will receive the indices
+     * @return the number of points inside of the rectangle (might be larger than result.length)
+     */
+    public int range(final double minX, final double minY, final double maxX, final double maxY, final int[] result) {
+        if (noOfRemainingPoints == 0) { return 0; }
+        int count = 0;
+        int top   = 0;
+        stackLo[0] = 0;
+        stackHi[0] = size;
+        while (top >= 0) {
+            final int lo = stackLo[top];
+            final int hi = stackHi[top];
+            top--;
+
+            final int    m = (lo + hi) >>> 1;
+            final double x = xs[m];
+            final double y = ys[m];
+            if (!removed[m] && x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                if (count < result.length) { result[count] = indices[m]; }
+                count++;
+            }
+
+            final double split = splitX[m] ? x : y;
+            final double min   = splitX[m] ? minX : minY;
+            final double max   = splitX[m] ? maxX : maxY;
+            if (min <= split) { top = push(top, lo, m, 0); }
+            if (max >= split) { top = push(top, m + 1, hi, 0); }
+        }
+        return count;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (null != xs && xs.length >= capacity) { return; }
+        xs        = new double[capacity];
+        ys        = new double[capacity];
+        indices   = new int[capacity];
+        positions = new int[capacity];
+        splitX    = new boolean[capacity];
+        removed   = new boolean[capacity];
+        alive     = new int[capacity];
+    }
+
+    private void build(final int size) {
+        this.size                = size;
+        this.noOfRemainingPoints = size;
+        build(0, size);
+        for (int i = 0 ; i < size ; i++) {
+            positions[indices[i]] = i;
+            removed[i]            = false;
+        }
+        countAlive(0, size);
+
+        int depth = 1;
+        while ((1L << depth) <= size) { depth++; }
+        final int stackSize = 2 * depth + 2;
+        if (null == stackLo || stackLo.length < stackSize) {
+            stackLo   = new int[stackSize];
+            stackHi   = new int[stackSize];
+            stackDist = new double[stackSize];
+        }
+    }
+    private void build(final int lo, final int hi) {
+        if (hi - lo <= 0) { return; }
+        // Split along the axis with the larger spread
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = lo ; i < hi ; i++) {
+            if (xs[i] < minX) { minX = xs[i]; }
+            if (xs[i] > maxX) { maxX = xs[i]; }
+            if (ys[i] < minY) { minY = ys[i]; }
+            if (ys[i] > maxY) { maxY = ys[i]; }
+        }
+        final boolean alongX = (maxX - minX) >= (maxY - minY);
+        final int     m      = (lo + hi) >>> 1;
+        select(lo, hi, m, alongX);
+        splitX[m] = alongX;
+        build(lo, m);
+        build(m + 1, hi);
+    }
+
+    private void countAlive(final int lo, final int hi) {
+        if (hi - lo <= 0) { return; }
+        final int m = (lo + hi) >>> 1;
+        alive[m] = hi - lo;
+        countAlive(lo, m);
+        countAlive(m + 1, hi);
+    }
+
+    // Partial quick sort that puts the k-th element at its sorted position in [lo, hi)
+    private void select(final int lo0, final int hi0, final int k, final boolean alongX) {
+        final double[] c  = alongX ? xs : ys;
+        int            lo = lo0;
+        int            hi = hi0 - 1;
+        while (hi > lo) {
+            final int    mid   = (lo + hi) >>> 1;
+            final double pivot = median(c[lo], c[mid], c[hi]);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (c[i] < pivot) { i++; }
+                while (c[j] > pivot) { j--; }
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static double median(final double a, final double b, final double c) {
+        if (a < b) {
+            return b < c ? b : (a < c ? c : a);
+        } else {
+            return a < c ? a : (b < c ? c : b);
+        }
+    }
+
+    private void swap(final int i, final int j) {
+        final double x = xs[i];
+        final double y = ys[i];
+        final int index = indices[i];
+        xs[i]      = xs[j];
+        ys[i]      = ys[j];
+        indices[i] = indices[j];
+        xs[j]      = x;
+        ys[j]      = y;
+        indices[j] = index;
+    }
+
+    private int nearest(final double x, final double y, final double maxDistSquare, final boolean inclusive) {
+        if (noOfRemainingPoints == 0) { return NONE; }
+        int    best     = NONE;
+        double bestDist = maxDistSquare;
+        int    top      = 0;
+        stackLo[0]   = 0;
+        stackHi[0]   = size;
+        stackDist[0] = 0;
+        while (top >= 0) {
+            final int    lo    = stackLo[top];
+            final int    hi    = stackHi[top];
+            final double bound = stackDist[top];
+            top--;
+            if (bound > bestDist) { continue; }
+
+            final int    m    = (lo + hi) >>> 1;
+            final double dx   = x - xs[m];
+            final double dy   = y - ys[m];
+            final double dist = dx * dx + dy * dy;
+            if (removed[m]) {
+                // Skip removed point but visit its children
+            } else if (best == NONE ? (dist < bestDist || (inclusive && dist == bestDist)) : isCloser(dist, indices[m], bestDist, best)) {
+                best     = indices[m];
+                bestDist = dist;
+            }
+
+            final double diff = splitX[m] ? dx : dy;
+            top = pushChildren(top, lo, m, hi, diff, bound);
+        }
+        return best;
+    }
+
+    // Push the far child first so that the near child will be visited first
+    private int pushChildren(int top, final int lo, final int m, final int hi, final double diff, final double bound) {
+        final double planeDist = Math.max(bound, diff * diff);
+        if (diff < 0) {
+            top = push(top, m + 1, hi, planeDist);
+            top = push(top, lo, m, bound);
+        } else {
+            top = push(top, lo, m, planeDist);
+            top = push(top, m + 1, hi, bound);
+        }
+        return top;
+    }
+
+    // Only push subtrees that are not empty and still contain points that have not been removed
+    private int push(int top, final int lo, final int hi, final double dist) {
+        if (lo >= hi || alive[(lo + hi) >>> 1] == 0) { return top; }
+        top++;
+        stackLo[top]   = lo;
+        stackHi[top]   = hi;
+        stackDist[top] = dist;
+        return top;
+    }
+
+    private static boolean isCloser(final double dist, final int index, final double otherDist, final int otherIndex) {
+        return dist < otherDist || (dist == otherDist && index < otherIndex);
+    }
+
+    // Max heap on (distance, index) used for the k nearest neighbour search
+    private int heapPush(final int heapSize, final int index, final double dist) {
+        int i = heapSize;
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (!isCloser(heapDistances[parent], heapIndices[parent], dist, index)) { break; }
+            heapIndices[i]   = heapIndices[parent];
+            heapDistances[i] = heapDistances[parent];
+            i = parent;
+        }
+        heapIndices[i]   = index;
+        heapDistances[i] = dist;
+        return heapSize + 1;
+    }
+
+    private void heapReplaceTop(final int heapSize, final int index, final double dist) {
+        heapIndices[0]   = index;
+        heapDistances[0] = dist;
+        siftDown(0, heapSize);
+    }
+
+    private void siftDown(int i, final int heapSize) {
+        final int    index = heapIndices[i];
+        final double dist  = heapDistances[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) { break; }
+            if (child + 1 < heapSize && isCloser(heapDistances[child], heapIndices[child], heapDistances[child + 1], heapIndices[child + 1])) { child++; }
+            if (!isCloser(dist, index, heapDistances[child], heapIndices[child])) { break; }
+            heapIndices[i]   = heapIndices[child];
+            heapDistances[i] = heapDistances[child];
+            i = child;
+        }
+        heapIndices[i]   = index;
+        heapDistances[i] = dist;
+    }
+}
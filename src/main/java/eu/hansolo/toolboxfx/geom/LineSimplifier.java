@@ -0,0 +1,361 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import eu.hansolo.toolboxfx.HelperFX;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Line simplification on primitive coordinate arrays.
+ * The static methods implement Douglas-Peucker (iterative) and Visvalingam-Whyatt
+ * (with a binary heap) and return the indices of the points that will be kept,
+ * the first and the last point are always kept. The results only depend on the
+ * order of the points along the line.
+ * An instance of LineSimplifier simplifies a line while points are appended
+ * (e.g. a live trace) by using sleeve fitting, each point that is dropped
+ * is within the tolerance of the simplified line.
+ */
+public class LineSimplifier {
+    private final double   tolerance;
+    private       double[] xs;
+    private       double[] ys;
+    private       int      size;
+    private       boolean  hasTip;
+    private       double   tipX;
+    private       double   tipY;
+    private       boolean  hasDirection;
+    private       double   directionX;
+    private       double   directionY;
+    private       double   minAngle;
+    private       double   maxAngle;
+    private       double   maxDistance;
+
+
+    // ******************** Constructors **************************************
+    public LineSimplifier(final double tolerance) {
+        if (tolerance < 0) { throw new IllegalArgumentException("tolerance must not be negative"); }
+        this.tolerance = tolerance;
+        this.xs        = new double[64];
+        this.ys        = new double[64];
+        clear();
+    }
+
+
+    // ******************** Methods *******************************************
+    public static List<Point> douglasPeucker(final List<Point> points, final double tolerance) {
+        final double[] xs = HelperFX.getPointsXFromPoints(points);
+        return toPoints(points, douglasPeucker(xs, HelperFX.getPointsYFromPoints(points), xs.length, tolerance));
+    }
+    /**
+     * Simplifies the line with the Douglas-Peucker algorithm without recursion
+     * @param xs        x coordinates of the line
+     * @param ys        y coordinates of the line
+     * @param size      number of points to use from the arrays
+     * @param tolerance max distance of a removed point to the simplified line
+     * @return the indices of the points that will be kept in ascending order
+     */
+    public static int[] douglasPeucker(final double[] xs, final double[] ys, final int size, final double tolerance) {
+        checkSize(xs, ys, size);
+        if (size <= 2) { return indices(size); }
+        final double    tolerance2 = tolerance * tolerance;
+        final boolean[] keep       = new boolean[size];
+        final int[]     stack      = new int[size * 2];
+        int top = 0;
+        keep[0]        = true;
+        keep[size - 1] = true;
+        stack[top++]   = 0;
+        stack[top++]   = size - 1;
+        while (top > 0) {
+            final int last  = stack[--top];
+            final int first = stack[--top];
+            double maxDistance = -1;
+            int    index       = -1;
+            for (int i = first + 1 ; i < last ; i++) {
+                final double distance = squareSegmentDistance(xs[i], ys[i], xs[first], ys[first], xs[last], ys[last]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    index       = i;
+                }
+            }
+            if (index > 0 && maxDistance > tolerance2) {
+                keep[index] = true;
+                if (index - first > 1) {
+                    stack[top++] = first;
+                    stack[top++] = index;
+                }
+                if (last - index > 1) {
+                    stack[top++] = index;
+                    stack[top++] = last;
+                }
+            }
+        }
+        int count = 0;
+        for (int i = 0 ; i < size ; i++) { if (keep[i]) { count++; } }
+        final int[] result = new int[count];
+        count = 0;
+        for (int i = 0 ; i < size ; i++) { if (keep[i]) { result[count++] = i; } }
+        return result;
+    }
+
+    public static List<Point> visvalingamWhyatt(final List<Point> points, final double minArea) {
+        final double[] xs = HelperFX.getPointsXFromPoints(points);
+        return toPoints(points, visvalingamWhyatt(xs, HelperFX.getPointsYFromPoints(points), xs.length, minArea, 2));
+    }
+    /**
+     * Simplifies the line with the Visvalingam-Whyatt algorithm by removing the point that forms
+     * the triangle with the smallest area with its neighbours until all triangles are larger than
+     * minArea or only minPoints points are left.
+     * @param xs        x coordinates of the line
+     * @param ys        y coordinates of the line
+     * @param size      number of points to use from the arrays
+     * @param minArea   min area of the triangle a point forms with its neighbours
+     * @param minPoints min number of points that will be kept (at least 2)
+     * @return the indices of the points that will be kept in ascending order
+     */
+    public static int[] visvalingamWhyatt(final double[] xs, final double[] ys, final int size, final double minArea, final int minPoints) {
+        checkSize(xs, ys, size);
+        if (size <= Math.max(2, minPoints)) { return indices(size); }
+        final int[]    prev      = new int[size];
+        final int[]    next      = new int[size];
+        final double[] areas     = new double[size];
+        final int[]    heap      = new int[size];
+        final int[]    positions = new int[size];
+        int heapSize = 0;
+        for (int i = 0 ; i < size ; i++) {
+            prev[i] = i - 1;
+            next[i] = i + 1;
+        }
+        for (int i = 1 ; i < size - 1 ; i++) {
+            areas[i]       = triangleArea(xs, ys, i - 1, i, i + 1);
+            heap[heapSize] = i;
+            positions[i]   = heapSize;
+            heapSize++;
+        }
+        for (int i = heapSize / 2 - 1 ; i >= 0 ; i--) { siftDown(heap, positions, areas, heapSize, i); }
+
+        int    remaining = size;
+        double maxArea   = 0;
+        while (heapSize > 0 && remaining > Math.max(2, minPoints)) {
+            final int index = heap[0];
+            // the area of a point is at least the area of the points removed before
+            final double area = Math.max(areas[index], maxArea);
+            if (area >= minArea) { break; }
+            maxArea = area;
+
+            heapSize--;
+            if (heapSize > 0) {
+                heap[0]            = heap[heapSize];
+                positions[heap[0]] = 0;
+                siftDown(heap, positions, areas, heapSize, 0);
+            }
+            positions[index] = -1;
+            remaining--;
+
+            final int p = prev[index];
+            final int n = next[index];
+            next[p] = n;
+            prev[n] = p;
+            if (p > 0) { updateArea(xs, ys, prev, next, areas, heap, positions, heapSize, p, maxArea); }
+            if (n < size - 1) { updateArea(xs, ys, prev, next, areas, heap, positions, heapSize, n, maxArea); }
+        }
+
+        final int[] result = new int[remaining];
+        int count = 0;
+        for (int i = 0 ; i < size ; i = next[i]) { result[count++] = i; }
+        return result;
+    }
+
+    public double getTolerance() { return tolerance; }
+
+    /**
+     * Appends a point to the line
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     */
+    public void add(final double x, final double y) {
+        if (size == 0) {
+            append(x, y);
+            return;
+        }
+        final double anchorX  = xs[size - 1];
+        final double anchorY  = ys[size - 1];
+        final double dx       = x - anchorX;
+        final double dy       = y - anchorY;
+        final double distance = Math.sqrt(dx * dx + dy * dy);
+        if (hasDirection && distance < maxDistance) {
+            // line turns back towards the anchor -> the previous point becomes a vertex
+            append(tipX, tipY);
+            add(x, y);
+            return;
+        }
+        maxDistance = Math.max(maxDistance, distance);
+        if (distance > tolerance) {
+            if (!hasDirection) {
+                hasDirection = true;
+                directionX   = dx / distance;
+                directionY   = dy / distance;
+                minAngle     = -Math.asin(tolerance / distance);
+                maxAngle     = -minAngle;
+            } else {
+                // angle of the point relative to the first direction of the sleeve
+                final double angle     = Math.atan2(directionX * dy - directionY * dx, directionX * dx + directionY * dy);
+                final double halfWidth = Math.asin(tolerance / distance);
+                if (angle < minAngle || angle > maxAngle) {
+                    // point is outside of the sleeve -> the previous point becomes a vertex
+                    append(tipX, tipY);
+                    add(x, y);
+                    return;
+                }
+                minAngle = Math.max(minAngle, angle - halfWidth);
+                maxAngle = Math.min(maxAngle, angle + halfWidth);
+            }
+        }
+        hasTip = true;
+        tipX   = x;
+        tipY   = y;
+    }
+
+    /**
+     * Returns the number of points of the simplified line including the last point that was added
+     * @return the number of points of the simplified line
+     */
+    public int size() { return hasTip ? size + 1 : size; }
+
+    public double getX(final int index) { return index == size && hasTip ? tipX : xs[checkIndex(index)]; }
+
+    public double getY(final int index) { return index == size && hasTip ? tipY : ys[checkIndex(index)]; }
+
+    public List<Point> getPoints() {
+        final int         noOfPoints = size();
+        final List<Point> points     = new ArrayList<>(noOfPoints);
+        for (int i = 0 ; i < noOfPoints ; i++) { points.add(new Point(getX(i), getY(i))); }
+        return points;
+    }
+
+    public void clear() {
+        size         = 0;
+        hasTip       = false;
+        hasDirection = false;
+        maxDistance  = 0;
+    }
+
+    private void append(final double x, final double y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+        hasTip       = false;
+        hasDirection = false;
+        maxDistance  = 0;
+    }
+
+    private int checkIndex(final int index) {
+        if (index < 0 || index >= size) { throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size()); }
+        return index;
+    }
+
+    private static void updateArea(final double[] xs, final double[] ys, final int[] prev, final int[] next, final double[] areas,
+                                   final int[] heap, final int[] positions, final int heapSize, final int index, final double maxArea) {
+        final double area = Math.max(triangleArea(xs, ys, prev[index], index, next[index]), maxArea);
+        final double old  = areas[index];
+        areas[index] = area;
+        if (area < old) {
+            siftUp(heap, positions, areas, positions[index]);
+        } else {
+            siftDown(heap, positions, areas, heapSize, positions[index]);
+        }
+    }
+
+    private static void siftUp(final int[] heap, final int[] positions, final double[] areas, final int start) {
+        int       i     = start;
+        final int index = heap[i];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (areas[heap[parent]] <= areas[index]) { break; }
+            heap[i]            = heap[parent];
+            positions[heap[i]] = i;
+            i                  = parent;
+        }
+        heap[i]          = index;
+        positions[index] = i;
+    }
+
+    private static void siftDown(final int[] heap, final int[] positions, final double[] areas, final int heapSize, final int start) {
+        int       i     = start;
+        final int index = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) { break; }
+            if (child + 1 < heapSize && areas[heap[child + 1]] < areas[heap[child]]) { child++; }
+            if (areas[index] <= areas[heap[child]]) { break; }
+            heap[i]            = heap[child];
+            positions[heap[i]] = i;
+            i                  = child;
+        }
+        heap[i]          = index;
+        positions[index] = i;
+    }
+
+    private static double triangleArea(final double[] xs, final double[] ys, final int i1, final int i2, final int i3) {
+        return Math.abs((xs[i1] - xs[i3]) * (ys[i2] - ys[i1]) - (xs[i1] - xs[i2]) * (ys[i3] - ys[i1])) * 0.5;
+    }
+
+    private static double squareSegmentDistance(final double x, final double y, final double x1, final double y1, final double x2, final double y2) {
+        double px = x1;
+        double py = y1;
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        if (dx != 0 || dy != 0) {
+            final double t = ((x - x1) * dx + (y - y1) * dy) / (dx * dx + dy * dy);
+            if (t > 1) {
+                px = x2;
+                py = y2;
+            } else if (t > 0) {
+                px += dx * t;
+                py += dy * t;
+            }
+        }
+        dx = x - px;
+        dy = y - py;
+        return dx * dx + dy * dy;
+    }
+
+    private static void checkSize(final double[] xs, final double[] ys, final int size) {
+        if (size < 0 || size > xs.length || size > ys.length) { throw new IllegalArgumentException("size must be between 0 and the length of the coordinate arrays"); }
+    }
+
+    private static int[] indices(final int size) {
+        final int[] indices = new int[size];
+        for (int i = 0 ; i < size ; i++) { indices[i] = i; }
+        return indices;
+    }
+
+    private static List<Point> toPoints(final List<Point> points, final int[] indices) {
+        final List<Point> result = new ArrayList<>(indices.length);
+        for (int index : indices) { result.add(points.get(index)); }
+        return result;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import javafx.scene.shape.Path;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+
+/**
+ * Reads the y coordinate of a curve at a given x coordinate, e.g. for crosshair tooltips on
+ * smoothed line charts. The segments of the path are split where their x coordinate turns around,
+ * so every piece is monotone in x. The pieces are sorted by their smallest x, a query is a binary
+ * search followed by a few safeguarded Newton steps on one piece and doesn't allocate.
+ * If several pieces cover the same x (e.g. the baseline of a filled path) the piece that starts
+ * at the largest x wins, for equal start the piece that comes first in the path wins.
+ * Vertical pieces are ignored.
+ */
+public class MonotoneCurveIndex {
+    private static final int       MAX_ITERATIONS = 32;
+    private        final CubicPath path;
+    private        final int       noOfPieces;
+    private        final int[]     segments;
+    private        final double[]  t0s;
+    private        final double[]  t1s;
+    private        final double[]  minXs;
+    private        final double[]  maxXs;
+    private        final double[]  prefixMaxXs;
+
+
+    // ******************** Constructors **************************************
+    public MonotoneCurveIndex(final CubicPath path) {
+        this.path = path;
+        final int      noOfSegments = path.getNoOfSegments();
+        final int      capacity     = noOfSegments * 3;
+        final int[]    segment      = new int[capacity];
+        final double[] t0           = new double[capacity];
+        final double[] t1           = new double[capacity];
+        final double[] roots        = new double[4];
+        int count = 0;
+        for (int s = 0 ; s < noOfSegments ; s++) {
+            final int    o  = s * 3;
+            final double d0 = path.getX(o + 1) - path.getX(o);
+            final double d1 = path.getX(o + 2) - path.getX(o + 1);
+            final double d2 = path.getX(o + 3) - path.getX(o + 2);
+            // roots of the derivative of x(t): (d0 - 2 * d1 + d2) * t^2 + 2 * (d1 - d0) * t + d0
+            final int noOfRoots = splitPoints(d0 - 2 * d1 + d2, 2 * (d1 - d0), d0, roots);
+            double start = 0;
+            for (int r = 0 ; r <= noOfRoots ; r++) {
+                final double end = r < noOfRoots ? roots[r] : 1;
+                if (end > start) {
+                    segment[count] = s;
+                    t0[count]      = start;
+                    t1[count]      = end;
+                    count++;
+                }
+                start = end;
+            }
+        }
+
+        // sort the non vertical pieces by their smallest x, for equal x keep the path order
+        final double[] x0s   = new double[count];
+        final double[] x1s   = new double[count];
+        final double[] point = new double[2];
+        int noOfValid = 0;
+        final Integer[] order = new Integer[count];
+        for (int i = 0 ; i < count ; i++) {
+            path.evaluate(segment[i], t0[i], point);
+            x0s[i] = point[0];
+            path.evaluate(segment[i], t1[i], point);
+            x1s[i] = point[0];
+            if (x0s[i] != x1s[i]) { order[noOfValid++] = i; }
+        }
+        Arrays.sort(order, 0, noOfValid, Comparator.<Integer>comparingDouble(i -> Math.min(x0s[i], x1s[i])).thenComparing(Comparator.<Integer>naturalOrder().reversed()));
+
+        this.noOfPieces  = noOfValid;
+        this.segments    = new int[noOfValid];
+        this.t0s         = new double[noOfValid];
+        this.t1s         = new double[noOfValid];
+        this.minXs       = new double[noOfValid];
+        this.maxXs       = new double[noOfValid];
+        this.prefixMaxXs = new double[noOfValid];
+        for (int i = 0 ; i < noOfValid ; i++) {
+            final int piece = order[i];
+            segments[i]    = segment[piece];
+            t0s[i]         = t0[piece];
+            t1s[i]         = t1[piece];
+            minXs[i]       = Math.min(x0s[piece], x1s[piece]);
+            maxXs[i]       = Math.max(x0s[piece], x1s[piece]);
+            prefixMaxXs[i] = i == 0 ? maxXs[i] : Math.max(prefixMaxXs[i - 1], maxXs[i]);
+        }
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Creates the index for the given path (e.g. the result of HelperFX.smoothPath())
+     * @param path the path to index
+     * @return the index for the given path
+     */
+    public static MonotoneCurveIndex fromPath(final Path path) { return new MonotoneCurveIndex(CubicPath.fromPath(path)); }
+
+    public CubicPath getPath() { return path; }
+
+    public int getNoOfPieces() { return noOfPieces; }
+
+    public double getMinX() { return noOfPieces == 0 ? Double.NaN : minXs[0]; }
+
+    public double getMaxX() { return noOfPieces == 0 ? Double.NaN : prefixMaxXs[noOfPieces - 1]; }
+
+    /**
+     * Returns the y coordinate of the curve at the given x coordinate
+     * @param x the x coordinate
+     * @return the y coordinate or NaN if the curve doesn't cover the given x coordinate
+     */
+    public double getY(final double x) {
+        final double parameter = getParameter(x);
+        if (Double.isNaN(parameter)) { return Double.NaN; }
+        final int    segment = path.segmentOf(parameter);
+        final double t       = parameter - segment;
+        final int    o       = segment * 3;
+        final double mt      = 1 - t;
+        return mt * mt * mt * path.getY(o) + 3 * mt * mt * t * path.getY(o + 1) + 3 * mt * t * t * path.getY(o + 2) + t * t * t * path.getY(o + 3);
+    }
+
+    /**
+     * Returns the position on the path at the given x coordinate, see CubicPath
+     * @param x the x coordinate
+     * @return the parameter of the path or NaN if the curve doesn't cover the given x coordinate
+     */
+    public double getParameter(final double x) {
+        final int piece = findPiece(x);
+        if (piece < 0) { return Double.NaN; }
+        final int segment = segments[piece];
+        return segment + solve(segment, t0s[piece], t1s[piece], x);
+    }
+
+    private int findPiece(final double x) {
+        if (noOfPieces == 0 || Double.isNaN(x)) { return -1; }
+        // last piece with minX <= x
+        int low  = 0;
+        int high = noOfPieces - 1;
+        if (minXs[0] > x) { return -1; }
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (minXs[mid] <= x) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        for (int i = low ; i >= 0 && prefixMaxXs[i] >= x ; i--) {
+            if (maxXs[i] >= x) { return i; }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds t in [ta, tb] with x(t) = x, x(t) is monotone in this range
+     */
+    private double solve(final int segment, final double ta, final double tb, final double x) {
+        final int    o       = segment * 3;
+        final double x0      = path.getX(o);
+        final double x1      = path.getX(o + 1);
+        final double x2      = path.getX(o + 2);
+        final double x3      = path.getX(o + 3);
+        final double epsilon = 1e-9 * (1 + Math.abs(x));
+        double low   = ta;
+        double high  = tb;
+        double fLow  = bezier(x0, x1, x2, x3, low) - x;
+        double fHigh = bezier(x0, x1, x2, x3, high) - x;
+        if (Math.abs(fLow) <= epsilon) { return low; }
+        if (Math.abs(fHigh) <= epsilon) { return high; }
+        // start with the linear interpolation
+        double t = low + (high - low) * fLow / (fLow - fHigh);
+        for (int i = 0 ; i < MAX_ITERATIONS ; i++) {
+            final double f = bezier(x0, x1, x2, x3, t) - x;
+            if (Math.abs(f) <= epsilon) { return t; }
+            if ((f < 0) == (fLow < 0)) {
+                low  = t;
+                fLow = f;
+            } else {
+                high = t;
+            }
+            final double mt         = 1 - t;
+            final double derivative = 3 * (mt * mt * (x1 - x0) + 2 * mt * t * (x2 - x1) + t * t * (x3 - x2));
+            double next = derivative == 0 ? Double.NaN : t - f / derivative;
+            // fall back to bisection if newton leaves the bracket
+            if (!(next > low && next < high)) { next = (low + high) * 0.5; }
+            if (high - low <= 1e-15) { return next; }
+            t = next;
+        }
+        return t;
+    }
+
+    private static double bezier(final double p0, final double p1, final double p2, final double p3, final double t) {
+        final double mt = 1 - t;
+        return mt * mt * mt * p0 + 3 * mt * mt * t * p1 + 3 * mt * t * t * p2 + t * t * t * p3;
+    }
+
+    /**
+     * Writes the roots of a * t^2 + b * t + c in (0, 1) in ascending order into roots
+     * @return the number of roots
+     */
+    private static int splitPoints(final double a, final double b, final double c, final double[] roots) {
+        int count = 0;
+        if (Math.abs(a) <= 1e-12 * Math.max(Math.abs(b), Math.abs(c))) {
+            if (b != 0) { count = addRoot(-c / b, roots, count); }
+        } else {
+            final double discriminant = b * b - 4 * a * c;
+            if (discriminant >= 0) {
+                final double sqrt = Math.sqrt(discriminant);
+                // numerically stable form
+                final double q  = -0.5 * (b + Math.copySign(sqrt, b));
+                count = addRoot(q / a, roots, count);
+                if (q != 0) { count = addRoot(c / q, roots, count); }
+            }
+        }
+        if (count == 2 && roots[0] > roots[1]) {
+            final double tmp = roots[0];
+            roots[0] = roots[1];
+            roots[1] = tmp;
+        }
+        return count;
+    }
+
+    private static int addRoot(final double root, final double[] roots, final int count) {
+        if (root > 0 && root < 1 && (count == 0 || roots[count - 1] != root)) {
+            roots[count] = root;
+            return count + 1;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import eu.hansolo.toolboxfx.HelperFX;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Hit testing for a mixed set of chart primitives (rectangles, circles, ellipses, sectors,
+ * ring segments and polygons). Shapes are registered once and stored in a uniform grid by
+ * their bounds. A pick only runs the exact HelperFX predicates on the shapes that are
+ * stored in the grid cell under the given point.
+ * Shapes added later are on top of shapes added before, toFront() moves a shape to the top.
+ * @param <T> type of the item that is attached to each shape
+ */
+public class PickingEngine<T> {
+    public  static final int               NONE                = -1;
+    public  static final double            DEFAULT_CELL_SIZE   = 64;
+    private static final long              MAX_CELLS_PER_SHAPE = 4096;
+    private        final SpatialGrid       grid;
+    private        final List<Pickable<T>> shapes;
+    private        final IntList           freeIds;
+    private        final IntList           oversized;
+    private              long              order;
+    private              int               size;
+
+    public enum ShapeType { RECTANGLE, CIRCLE, ELLIPSE, SECTOR, RING_SEGMENT, POLYGON }
+
+
+    // ******************** Constructors **************************************
+    public PickingEngine() {
+        this(DEFAULT_CELL_SIZE);
+    }
+    public PickingEngine(final double cellSize) {
+        this.grid      = new SpatialGrid(cellSize);
+        this.shapes    = new ArrayList<>();
+        this.freeIds   = new IntList();
+        this.oversized = new IntList();
+        this.order     = 0;
+        this.size      = 0;
+    }
+
+
+    // ******************** Methods *******************************************
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public int addRectangle(final T item, final double x, final double y, final double width, final double height) {
+        return add(new Pickable<>(ShapeType.RECTANGLE, item, new double[] { x, y, width, height }, null, null));
+    }
+
+    public int addCircle(final T item, final double centerX, final double centerY, final double radius) {
+        return add(new Pickable<>(ShapeType.CIRCLE, item, new double[] { centerX, centerY, radius }, null, null));
+    }
+
+    public int addEllipse(final T item, final double centerX, final double centerY, final double radiusX, final double radiusY) {
+        return add(new Pickable<>(ShapeType.ELLIPSE, item, new double[] { centerX, centerY, radiusX, radiusY }, null, null));
+    }
+
+    /**
+     * Adds a sector, the angles are interpreted the same way as in HelperFX.isInSector()
+     * @param item         the item that will be returned when the sector is picked
+     * @param centerX      x coordinate of the center
+     * @param centerY      y coordinate of the center
+     * @param radius       radius of the sector
+     * @param startAngle   start angle in degrees
+     * @param segmentAngle angular extent in degrees
+     * @return the id of the shape
+     */
+    public int addSector(final T item, final double centerX, final double centerY, final double radius, final double startAngle, final double segmentAngle) {
+        return add(new Pickable<>(ShapeType.SECTOR, item, new double[] { centerX, centerY, radius, startAngle, segmentAngle }, null, null));
+    }
+
+    /**
+     * Adds a ring segment, the angles are interpreted the same way as in HelperFX.isInRingSegment()
+     * @param item         the item that will be returned when the ring segment is picked
+     * @param centerX      x coordinate of the center
+     * @param centerY      y coordinate of the center
+     * @param outerRadius  outer radius of the ring segment
+     * @param innerRadius  inner radius of the ring segment
+     * @param startAngle   start angle in degrees
+     * @param segmentAngle angular extent in degrees
+     * @return the id of the shape
+     */
+    public int addRingSegment(final T item, final double centerX, final double centerY, final double outerRadius, final double innerRadius, final double startAngle, final double segmentAngle) {
+        return add(new Pickable<>(ShapeType.RING_SEGMENT, item, new double[] { centerX, centerY, outerRadius, innerRadius, startAngle, segmentAngle }, null, null));
+    }
+
+    public int addPolygon(final T item, final List<Point> points) {
+        return addPolygon(item, HelperFX.getPointsXFromPoints(points), HelperFX.getPointsYFromPoints(points));
+    }
+    public int addPolygon(final T item, final double[] pointsX, final double[] pointsY) {
+        if (pointsX.length != pointsY.length) { throw new IllegalArgumentException("pointsX and pointsY must have the same length"); }
+        return add(new Pickable<>(ShapeType.POLYGON, item, null, pointsX.clone(), pointsY.clone()));
+    }
+
+    public boolean contains(final int id) { return id >= 0 && id < shapes.size() && null != shapes.get(id); }
+
+    public T getItem(final int id) { return get(id).item; }
+
+    public ShapeType getShapeType(final int id) { return get(id).type; }
+
+    /**
+     * Moves the shape with the given id by the given offset and updates the grid
+     * @param id the id of the shape
+     * @param dx offset in x direction
+     * @param dy offset in y direction
+     */
+    public void moveBy(final int id, final double dx, final double dy) {
+        final Pickable<T> shape = get(id);
+        unregister(id, shape);
+        shape.translate(dx, dy);
+        register(id, shape);
+    }
+
+    /**
+     * Moves the shape with the given id on top of all other shapes
+     * @param id the id of the shape
+     */
+    public void toFront(final int id) { get(id).order = order++; }
+
+    public void remove(final int id) {
+        final Pickable<T> shape = get(id);
+        unregister(id, shape);
+        shapes.set(id, null);
+        freeIds.add(id);
+        size--;
+    }
+
+    public void clear() {
+        grid.clear();
+        shapes.clear();
+        freeIds.clear();
+        oversized.clear();
+        order = 0;
+        size  = 0;
+    }
+
+    /**
+     * Returns the id of the topmost shape that contains the given point
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @return the id of the topmost shape or -1 if no shape contains the point
+     */
+    public int pickId(final double x, final double y) {
+        int  topmostId    = NONE;
+        long topmostOrder = Long.MIN_VALUE;
+        final IntList candidates = grid.getAt(x, y);
+        if (null != candidates) {
+            for (int i = 0, n = candidates.size() ; i < n ; i++) {
+                final int         id    = candidates.get(i);
+                final Pickable<T> shape = shapes.get(id);
+                if (shape.order > topmostOrder && shape.contains(x, y)) {
+                    topmostId    = id;
+                    topmostOrder = shape.order;
+                }
+            }
+        }
+        for (int i = 0, n = oversized.size() ; i < n ; i++) {
+            final int         id    = oversized.get(i);
+            final Pickable<T> shape = shapes.get(id);
+            if (shape.order > topmostOrder && shape.contains(x, y)) {
+                topmostId    = id;
+                topmostOrder = shape.order;
+            }
+        }
+        return topmostId;
+    }
+
+    /**
+     * Returns the item of the topmost shape that contains the given point
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @return the item of the topmost shape or null if no shape contains the point
+     */
+    public T pick(final double x, final double y) {
+        final int id = pickId(x, y);
+        return NONE == id ? null : shapes.get(id).item;
+    }
+
+    /**
+     * Returns the items of all shapes that contain the given point, the topmost shape comes first
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @return the items of all shapes that contain the given point
+     */
+    public List<T> pickAll(final double x, final double y) {
+        final List<Pickable<T>> hits       = new ArrayList<>();
+        final IntList           candidates = grid.getAt(x, y);
+        if (null != candidates) {
+            for (int i = 0, n = candidates.size() ; i < n ; i++) {
+                final Pickable<T> shape = shapes.get(candidates.get(i));
+                if (shape.contains(x, y)) { hits.add(shape); }
+            }
+        }
+        for (int i = 0, n = oversized.size() ; i < n ; i++) {
+            final Pickable<T> shape = shapes.get(oversized.get(i));
+            if (shape.contains(x, y)) { hits.add(shape); }
+        }
+        hits.sort((s1, s2) -> Long.compare(s2.order, s1.order));
+        final List<T> items = new ArrayList<>(hits.size());
+        for (Pickable<T> hit : hits) { items.add(hit.item); }
+        return items;
+    }
+
+    private Pickable<T> get(final int id) {
+        if (!contains(id)) { throw new IllegalArgumentException("No shape with id " + id); }
+        return shapes.get(id);
+    }
+
+    private int add(final Pickable<T> shape) {
+        shape.order = order++;
+        final int id;
+        if (freeIds.isEmpty()) {
+            id = shapes.size();
+            shapes.add(shape);
+        } else {
+            id = freeIds.removeLast();
+            shapes.set(id, shape);
+        }
+        register(id, shape);
+        size++;
+        return id;
+    }
+
+    private void register(final int id, final Pickable<T> shape) {
+        shape.updateBounds();
+        if (isOversized(shape)) {
+            oversized.add(id);
+        } else {
+            grid.insert(id, shape.minX, shape.minY, shape.maxX, shape.maxY);
+        }
+    }
+
+    private void unregister(final int id, final Pickable<T> shape) {
+        if (isOversized(shape)) {
+            oversized.removeValue(id);
+        } else {
+            grid.remove(id, shape.minX, shape.minY, shape.maxX, shape.maxY);
+        }
+    }
+
+    private boolean isOversized(final Pickable<T> shape) {
+        return SpatialGrid.noOfCells(grid.cell(shape.minX), grid.cell(shape.minY), grid.cell(shape.maxX), grid.cell(shape.maxY)) > MAX_CELLS_PER_SHAPE;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class Pickable<T> {
+        private final ShapeType type;
+        private final T         item;
+        private final double[]  params;
+        private final double[]  pointsX;
+        private final double[]  pointsY;
+        private       double    minX;
+        private       double    minY;
+        private       double    maxX;
+        private       double    maxY;
+        private       long      order;
+
+
+        // ******************** Constructors **********************************
+        Pickable(final ShapeType type, final T item, final double[] params, final double[] pointsX, final double[] pointsY) {
+            this.type    = type;
+            this.item    = item;
+            this.params  = params;
+            this.pointsX = pointsX;
+            this.pointsY = pointsY;
+        }
+
+
+        // ******************** Methods ***************************************
+        void translate(final double dx, final double dy) {
+            if (ShapeType.POLYGON == type) {
+                for (int i = 0 ; i < pointsX.length ; i++) {
+                    pointsX[i] += dx;
+                    pointsY[i] += dy;
+                }
+            } else {
+                params[0] += dx;
+                params[1] += dy;
+            }
+        }
+
+        void updateBounds() {
+            switch (type) {
+                case RECTANGLE:
+                    minX = params[0];
+                    minY = params[1];
+                    maxX = params[0] + params[2];
+                    maxY = params[1] + params[3];
+                    break;
+                case ELLIPSE:
+                    minX = params[0] - params[2];
+                    minY = params[1] - params[3];
+                    maxX = params[0] + params[2];
+                    maxY = params[1] + params[3];
+                    break;
+                case CIRCLE:
+                case SECTOR:
+                case RING_SEGMENT:
+                    minX = params[0] - params[2];
+                    minY = params[1] - params[2];
+                    maxX = params[0] + params[2];
+                    maxY = params[1] + params[2];
+                    break;
+                case POLYGON:
+                    minX = Double.POSITIVE_INFINITY;
+                    minY = Double.POSITIVE_INFINITY;
+                    maxX = Double.NEGATIVE_INFINITY;
+                    maxY = Double.NEGATIVE_INFINITY;
+                    for (int i = 0 ; i < pointsX.length ; i++) {
+                        minX = Math.min(minX, pointsX[i]);
+                        minY = Math.min(minY, pointsY[i]);
+                        maxX = Math.max(maxX, pointsX[i]);
+                        maxY = Math.max(maxY, pointsY[i]);
+                    }
+                    if (pointsX.length == 0) {
+                        minX = minY = maxX = maxY = 0;
+                    }
+                    break;
+            }
+        }
+
+        boolean contains(final double x, final double y) {
+            if (x < minX || x > maxX || y < minY || y > maxY) { return false; }
+            switch (type) {
+                case RECTANGLE   : return HelperFX.isInRectangle(x, y, minX, minY, maxX, maxY);
+                case CIRCLE      : return HelperFX.isInCircle(x, y, params[0], params[1], params[2]);
+                case ELLIPSE     : return HelperFX.isInEllipse(x, y, params[0], params[1], params[2], params[3]);
+                case SECTOR      : return HelperFX.isInSector(x, y, params[0], params[1], params[2], params[3], params[4]);
+                case RING_SEGMENT: return HelperFX.isInRingSegment(x, y, params[0], params[1], params[2], params[3], params[4], params[5]);
+                case POLYGON     : return HelperFX.isInPolygon(x, y, pointsX.length, pointsX, pointsY);
+                default          : return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import javafx.scene.shape.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Growable buffer of points that keeps the x and y coordinates in two separate
+ * double arrays (16 bytes per point instead of a Point object per point).
+ * All transformations are applied in place without creating any objects.
+ * A view shares the arrays with the buffer it was created from, changes of
+ * the coordinates are visible in both, but a view can not grow. If the buffer
+ * grows beyond its capacity, existing views keep the old arrays.
+ */
+public class PointBuffer {
+    private static final int      DEFAULT_CAPACITY = 16;
+    private              double[] xs;
+    private              double[] ys;
+    private              int      offset;
+    private              int      size;
+    private        final boolean  view;
+
+
+    // ******************** Constructors **************************************
+    public PointBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+    public PointBuffer(final int initialCapacity) {
+        if (initialCapacity < 0) { throw new IllegalArgumentException("initialCapacity must not be negative"); }
+        this.xs     = new double[initialCapacity];
+        this.ys     = new double[initialCapacity];
+        this.offset = 0;
+        this.size   = 0;
+        this.view   = false;
+    }
+    public PointBuffer(final List<Point> points) {
+        this(points.size());
+        addAll(points);
+    }
+    private PointBuffer(final double[] xs, final double[] ys, final int offset, final int size, final boolean view) {
+        this.xs     = xs;
+        this.ys     = ys;
+        this.offset = offset;
+        this.size   = size;
+        this.view   = view;
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Creates a view on the given arrays without copying them
+     * @param xs   x coordinates
+     * @param ys   y coordinates
+     * @param size number of points to use from the arrays
+     * @return a view on the given arrays
+     */
+    public static PointBuffer wrap(final double[] xs, final double[] ys, final int size) {
+        if (size < 0 || size > xs.length || size > ys.length) { throw new IllegalArgumentException("size must be between 0 and the length of the coordinate arrays"); }
+        return new PointBuffer(xs, ys, 0, size, true);
+    }
+
+    public static PointBuffer fromPolygon(final Polygon polygon) {
+        final List<Double> coordinates = polygon.getPoints();
+        final int          noOfPoints  = coordinates.size() / 2;
+        final PointBuffer  buffer      = new PointBuffer(noOfPoints);
+        for (int i = 0 ; i < noOfPoints ; i++) { buffer.add(coordinates.get(i * 2), coordinates.get(i * 2 + 1)); }
+        return buffer;
+    }
+
+    public static PointBuffer fromDoubleArray(final double[] coordinates) {
+        final int         noOfPoints = coordinates.length / 2;
+        final PointBuffer buffer     = new PointBuffer(noOfPoints);
+        for (int i = 0 ; i < noOfPoints ; i++) { buffer.add(coordinates[i * 2], coordinates[i * 2 + 1]); }
+        return buffer;
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean isView() { return view; }
+
+    public double getX(final int index) { return xs[offset + checkIndex(index)]; }
+
+    public double getY(final int index) { return ys[offset + checkIndex(index)]; }
+
+    public Point getPoint(final int index) { return new Point(getX(index), getY(index)); }
+
+    public void set(final int index, final double x, final double y) {
+        final int i = offset + checkIndex(index);
+        xs[i] = x;
+        ys[i] = y;
+    }
+
+    /**
+     * Returns the array with the x coordinates without copying it, the coordinates
+     * of this buffer start at getOffset() and the array might be larger than size()
+     * @return the array with the x coordinates
+     */
+    public double[] getXArray() { return xs; }
+
+    /**
+     * Returns the array with the y coordinates without copying it, the coordinates
+     * of this buffer start at getOffset() and the array might be larger than size()
+     * @return the array with the y coordinates
+     */
+    public double[] getYArray() { return ys; }
+
+    public int getOffset() { return offset; }
+
+    public void add(final Point point) { add(point.getX(), point.getY()); }
+    public void add(final double x, final double y) {
+        ensureCapacity(size + 1);
+        xs[offset + size] = x;
+        ys[offset + size] = y;
+        size++;
+    }
+
+    public void addAll(final List<Point> points) {
+        ensureCapacity(size + points.size());
+        for (Point point : points) {
+            xs[offset + size] = point.getX();
+            ys[offset + size] = point.getY();
+            size++;
+        }
+    }
+    public void addAll(final PointBuffer buffer) {
+        ensureCapacity(size + buffer.size);
+        System.arraycopy(buffer.xs, buffer.offset, xs, offset + size, buffer.size);
+        System.arraycopy(buffer.ys, buffer.offset, ys, offset + size, buffer.size);
+        size += buffer.size;
+    }
+
+    public void clear() {
+        if (view) { throw new UnsupportedOperationException("A view can not be cleared"); }
+        size = 0;
+    }
+
+    public void ensureCapacity(final int capacity) {
+        if (view && capacity > size) { throw new UnsupportedOperationException("A view can not grow"); }
+        if (capacity <= xs.length - offset) { return; }
+        final int newCapacity = Math.max(capacity, Math.max(DEFAULT_CAPACITY, xs.length + (xs.length >> 1)));
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+    }
+
+    /**
+     * Returns a view on the points from (inclusive) to (exclusive) that shares the arrays with this buffer
+     * @param from index of the first point
+     * @param to   index after the last point
+     * @return a view on the given range of points
+     */
+    public PointBuffer view(final int from, final int to) {
+        if (from < 0 || to > size || from > to) { throw new IndexOutOfBoundsException("Range " + from + " - " + to + " out of bounds for size " + size); }
+        return new PointBuffer(xs, ys, offset + from, to - from, true);
+    }
+
+    public PointBuffer copy() {
+        final PointBuffer copy = new PointBuffer(size);
+        copy.addAll(this);
+        return copy;
+    }
+
+    public void translate(final double dx, final double dy) {
+        for (int i = offset, end = offset + size ; i < end ; i++) {
+            xs[i] += dx;
+            ys[i] += dy;
+        }
+    }
+
+    public void scale(final double factor) { scale(factor, factor, 0, 0); }
+    public void scale(final double scaleX, final double scaleY) { scale(scaleX, scaleY, 0, 0); }
+    public void scale(final double scaleX, final double scaleY, final double pivotX, final double pivotY) {
+        transform(scaleX, 0, pivotX - pivotX * scaleX, 0, scaleY, pivotY - pivotY * scaleY);
+    }
+
+    /**
+     * Rotates all points around the given center like HelperFX.rotatePointAroundRotationCenter()
+     * @param angleDeg rotation angle in degrees
+     * @param centerX  x coordinate of the rotation center
+     * @param centerY  y coordinate of the rotation center
+     */
+    public void rotate(final double angleDeg, final double centerX, final double centerY) {
+        final double rad = Math.toRadians(angleDeg);
+        final double sin = Math.sin(rad);
+        final double cos = Math.cos(rad);
+        for (int i = offset, end = offset + size ; i < end ; i++) {
+            final double dx = xs[i] - centerX;
+            final double dy = ys[i] - centerY;
+            xs[i] = centerX + dx * cos - dy * sin;
+            ys[i] = centerY + dx * sin + dy * cos;
+        }
+    }
+
+    /**
+     * Applies the affine transformation x' = mxx * x + mxy * y + tx, y' = myx * x + myy * y + ty to all points
+     * @param mxx x scale
+     * @param mxy x shear
+     * @param tx  x translation
+     * @param myx y shear
+     * @param myy y scale
+     * @param ty  y translation
+     */
+    public void transform(final double mxx, final double mxy, final double tx, final double myx, final double myy, final double ty) {
+        for (int i = offset, end = offset + size ; i < end ; i++) {
+            final double x = xs[i];
+            final double y = ys[i];
+            xs[i] = mxx * x + mxy * y + tx;
+            ys[i] = myx * x + myy * y + ty;
+        }
+    }
+
+    public Bounds getBounds() {
+        if (size == 0) { return new Bounds(); }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = offset, end = offset + size ; i < end ; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        return new Bounds(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    public double[] getPointsX() { return Arrays.copyOfRange(xs, offset, offset + size); }
+
+    public double[] getPointsY() { return Arrays.copyOfRange(ys, offset, offset + size); }
+
+    /**
+     * Returns the coordinates as one array in the form x0, y0, x1, y1, ...
+     * @return the interleaved coordinates
+     */
+    public double[] toDoubleArray() {
+        final double[] coordinates = new double[size * 2];
+        for (int i = 0 ; i < size ; i++) {
+            coordinates[i * 2]     = xs[offset + i];
+            coordinates[i * 2 + 1] = ys[offset + i];
+        }
+        return coordinates;
+    }
+
+    public List<Point> toPoints() {
+        final List<Point> points = new ArrayList<>(size);
+        for (int i = offset, end = offset + size ; i < end ; i++) { points.add(new Point(xs[i], ys[i])); }
+        return points;
+    }
+
+    public Polygon toPolygon() {
+        final Polygon polygon = new Polygon();
+        applyTo(polygon);
+        return polygon;
+    }
+
+    /**
+     * Replaces the points of the given polygon with the points of this buffer
+     * @param polygon the polygon that should get the points of this buffer
+     */
+    public void applyTo(final Polygon polygon) {
+        final Double[] coordinates = new Double[size * 2];
+        for (int i = 0 ; i < size ; i++) {
+            coordinates[i * 2]     = xs[offset + i];
+            coordinates[i * 2 + 1] = ys[offset + i];
+        }
+        polygon.getPoints().setAll(coordinates);
+    }
+
+    private int checkIndex(final int index) {
+        if (index < 0 || index >= size) { throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size); }
+        return index;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import eu.hansolo.toolbox.Constants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Hash set of points that uses the same tolerance based equality as Point.equals()
+ * (both coordinates differ by less than the tolerance). The coordinates are quantized
+ * into cells of the size of the tolerance and stored in an open addressing hash table,
+ * a lookup only has to check the cell of the point and its 8 neighbours.
+ * No Point objects are stored, each point that was added gets an index starting at 0.
+ */
+public class PointHash {
+    public  static final int      NONE  = -1;
+    private static final int      EMPTY = -1;
+    private        final double   tolerance;
+    private        final double   invTolerance;
+    private              double[] xs;
+    private              double[] ys;
+    private              long[]   cellsX;
+    private              long[]   cellsY;
+    private              int[]    table;
+    private              int      mask;
+    private              int      size;
+
+
+    // ******************** Constructors **************************************
+    public PointHash() {
+        this(Constants.EPSILON);
+    }
+    public PointHash(final double tolerance) {
+        this(tolerance, 16);
+    }
+    public PointHash(final double tolerance, final int expectedSize) {
+        if (tolerance <= 0 || !Double.isFinite(tolerance)) { throw new IllegalArgumentException("tolerance must be a positive number"); }
+        final int capacity = Math.max(16, expectedSize);
+        this.tolerance    = tolerance;
+        this.invTolerance = 1.0 / tolerance;
+        this.xs           = new double[capacity];
+        this.ys           = new double[capacity];
+        this.cellsX       = new long[capacity];
+        this.cellsY       = new long[capacity];
+        this.table        = new int[tableSize(capacity)];
+        this.mask         = table.length - 1;
+        Arrays.fill(table, EMPTY);
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Returns the indices of the points that are not equal to a point before them
+     * @param xs        x coordinates of the points
+     * @param ys        y coordinates of the points
+     * @param size      number of points to use from the arrays
+     * @param tolerance max difference of the coordinates of equal points
+     * @return the indices of the unique points in ascending order
+     */
+    public static int[] dedup(final double[] xs, final double[] ys, final int size, final double tolerance) {
+        if (size < 0 || size > xs.length || size > ys.length) { throw new IllegalArgumentException("size must be between 0 and the length of the coordinate arrays"); }
+        final PointHash hash    = new PointHash(tolerance, size);
+        final int[]     indices = new int[size];
+        int count = 0;
+        for (int i = 0 ; i < size ; i++) {
+            if (hash.add(xs[i], ys[i])) { indices[count++] = i; }
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    public static List<Point> dedup(final List<Point> points) { return dedup(points, Constants.EPSILON); }
+    public static List<Point> dedup(final List<Point> points, final double tolerance) {
+        final PointHash   hash   = new PointHash(tolerance, points.size());
+        final List<Point> result = new ArrayList<>();
+        for (Point point : points) {
+            if (hash.add(point.getX(), point.getY())) { result.add(point); }
+        }
+        return result;
+    }
+
+    public double getTolerance() { return tolerance; }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public double getX(final int index) { return xs[checkIndex(index)]; }
+
+    public double getY(final int index) { return ys[checkIndex(index)]; }
+
+    public boolean add(final Point point) { return add(point.getX(), point.getY()); }
+    /**
+     * Adds the given point if no equal point was added before
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @return true if the point was added
+     */
+    public boolean add(final double x, final double y) {
+        final int sizeBefore = size;
+        put(x, y);
+        return size > sizeBefore;
+    }
+
+    /**
+     * Returns the index of an equal point that was added before or adds the point
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @return the index of the equal point or the index of the added point
+     */
+    public int put(final double x, final double y) {
+        final int index = indexOf(x, y);
+        if (NONE != index) { return index; }
+        if (size == xs.length) { grow(); }
+        xs[size]     = x;
+        ys[size]     = y;
+        cellsX[size] = cell(x);
+        cellsY[size] = cell(y);
+        insert(size);
+        return size++;
+    }
+
+    public boolean contains(final Point point) { return indexOf(point.getX(), point.getY()) != NONE; }
+    public boolean contains(final double x, final double y) { return indexOf(x, y) != NONE; }
+
+    public int indexOf(final Point point) { return indexOf(point.getX(), point.getY()); }
+    /**
+     * Returns the smallest index of the points that are equal to the given point
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @return the index of the equal point or -1 if no equal point was added
+     */
+    public int indexOf(final double x, final double y) {
+        final long cellX = cell(x);
+        final long cellY = cell(y);
+        int result = NONE;
+        for (long cy = cellY - 1 ; cy <= cellY + 1 ; cy++) {
+            for (long cx = cellX - 1 ; cx <= cellX + 1 ; cx++) {
+                int slot = hash(cx, cy) & mask;
+                int index;
+                while ((index = table[slot]) != EMPTY) {
+                    if (cellsX[index] == cx && cellsY[index] == cy &&
+                        Math.abs(xs[index] - x) < tolerance && Math.abs(ys[index] - y) < tolerance &&
+                        (NONE == result || index < result)) {
+                        result = index;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        size = 0;
+        Arrays.fill(table, EMPTY);
+    }
+
+    private void insert(final int index) {
+        int slot = hash(cellsX[index], cellsY[index]) & mask;
+        while (table[slot] != EMPTY) { slot = (slot + 1) & mask; }
+        table[slot] = index;
+    }
+
+    private void grow() {
+        final int capacity = xs.length * 2;
+        xs     = Arrays.copyOf(xs, capacity);
+        ys     = Arrays.copyOf(ys, capacity);
+        cellsX = Arrays.copyOf(cellsX, capacity);
+        cellsY = Arrays.copyOf(cellsY, capacity);
+        table  = new int[tableSize(capacity)];
+        mask   = table.length - 1;
+        Arrays.fill(table, EMPTY);
+        for (int i = 0 ; i < size ; i++) { insert(i); }
+    }
+
+    private long cell(final double value) { return (long) Math.floor(value * invTolerance); }
+
+    private int checkIndex(final int index) {
+        if (index < 0 || index >= size) { throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size); }
+        return index;
+    }
+
+    private static int tableSize(final int capacity) {
+        // keep the load factor below 0.5
+        return Integer.highestOneBit(Math.max(2, capacity) - 1) << 2;
+    }
+
+    private static int hash(final long cellX, final long cellY) {
+        long h = cellX * 0x9E3779B97F4A7C15L + cellY * 0xC2B2AE3D27D4EB4FL;
+        h ^= (h >>> 31);
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
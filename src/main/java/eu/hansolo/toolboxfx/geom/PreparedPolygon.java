@@ -0,0 +1,207 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import eu.hansolo.toolboxfx.HelperFX;
+import javafx.scene.shape.Polygon;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+
+/**
+ * Polygon that is prepared for a large number of point in polygon tests.
+ * Every edge is stored once and indexed by its y interval in an implicit,
+ * balanced interval tree (edges sorted by their smaller y, each node knows the
+ * largest y of its subtree). A test skips the subtrees whose edges can't
+ * contain the y coordinate of the point, it takes O(k log n) for k edges that
+ * span that y (up to O(n) if most edges span it, e.g. zigzag outlines). Storage is O(n).
+ * A polygon can consist of several rings (e.g. with holes) that are combined
+ * with the even-odd rule.
+ * Points outside of the bounding box are rejected right away. The results are
+ * the same as the ones of HelperFX.isInPolygon().
+ * A prepared polygon is immutable and can be used from different threads.
+ */
+public class PreparedPolygon {
+    private static final int      MIN_CHUNK_SIZE = 4096;
+    private        final int      noOfPoints;
+    private        final double   minX;
+    private        final double   minY;
+    private        final double   maxX;
+    private        final double   maxY;
+    private        final int      noOfEdges;
+    private        final double[] edges;
+    private        final double[] lows;
+    private        final double[] subtreeHighs;
+
+
+    // ******************** Constructors **************************************
+    public PreparedPolygon(final List<Point> points) {
+        this(HelperFX.getPointsXFromPoints(points), HelperFX.getPointsYFromPoints(points));
+    }
+    public PreparedPolygon(final Polygon polygon) {
+        this(getCoordinates(polygon.getPoints(), 0), getCoordinates(polygon.getPoints(), 1));
+    }
+    public PreparedPolygon(final double[] pointsX, final double[] pointsY) {
+        this(pointsX, pointsY, new int[] { pointsX.length });
+    }
+    /**
+     * Creates a polygon that consists of several rings (e.g. the outline and the hole of a donut),
+     * the points of ring i end before index ringEnds[i] and every ring is closed implicitly
+     * @param pointsX  x coordinates of the points of all rings
+     * @param pointsY  y coordinates of the points of all rings
+     * @param ringEnds the end index (exclusive) of each ring in ascending order, the last one is the number of points
+     */
+    PreparedPolygon(final double[] pointsX, final double[] pointsY, final int[] ringEnds) {
+        if (pointsX.length != pointsY.length) { throw new IllegalArgumentException("pointsX and pointsY must have the same length"); }
+        noOfPoints = pointsX.length;
+        if (noOfPoints > 0 && (ringEnds.length == 0 || ringEnds[ringEnds.length - 1] != noOfPoints)) { throw new IllegalArgumentException("The last ring has to end at the number of points"); }
+
+        double bbMinX = Double.POSITIVE_INFINITY;
+        double bbMinY = Double.POSITIVE_INFINITY;
+        double bbMaxX = Double.NEGATIVE_INFINITY;
+        double bbMaxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0 ; i < noOfPoints ; i++) {
+            bbMinX = Math.min(bbMinX, pointsX[i]);
+            bbMinY = Math.min(bbMinY, pointsY[i]);
+            bbMaxX = Math.max(bbMaxX, pointsX[i]);
+            bbMaxY = Math.max(bbMaxY, pointsY[i]);
+        }
+        minX = bbMinX;
+        minY = bbMinY;
+        maxX = bbMaxX;
+        maxY = bbMaxY;
+
+        // the edge of point i starts at the previous point of its ring
+        final int[] previous = new int[noOfPoints];
+        int start = 0;
+        for (int ringEnd : ringEnds) {
+            if (ringEnd < start || ringEnd > noOfPoints) { throw new IllegalArgumentException("ringEnds must be ascending and not larger than the number of points"); }
+            for (int i = start ; i < ringEnd ; i++) { previous[i] = i == start ? ringEnd - 1 : i - 1; }
+            start = ringEnd;
+        }
+
+        // horizontal edges never cross the ray and are skipped
+        int count = 0;
+        final Integer[] order = new Integer[noOfPoints];
+        for (int i = 0 ; i < noOfPoints ; i++) {
+            if (Double.compare(pointsY[i], pointsY[previous[i]]) != 0) { order[count++] = i; }
+        }
+        Arrays.sort(order, 0, count, Comparator.comparingDouble(i -> Math.min(pointsY[i], pointsY[previous[i]])));
+
+        // each edge is stored once as xi, yi, xj, yj to evaluate the crossing exactly like HelperFX.isInPolygon()
+        noOfEdges    = count;
+        edges        = new double[noOfEdges * 4];
+        lows         = new double[noOfEdges];
+        subtreeHighs = new double[noOfEdges];
+        for (int e = 0 ; e < noOfEdges ; e++) {
+            final int i = order[e];
+            final int j = previous[i];
+            edges[e * 4]     = pointsX[i];
+            edges[e * 4 + 1] = pointsY[i];
+            edges[e * 4 + 2] = pointsX[j];
+            edges[e * 4 + 3] = pointsY[j];
+            lows[e]          = Math.min(pointsY[i], pointsY[j]);
+            subtreeHighs[e]  = Math.max(pointsY[i], pointsY[j]);
+        }
+        buildSubtreeHighs(0, noOfEdges);
+    }
+
+
+    // ******************** Methods *******************************************
+    public int getNoOfPoints() { return noOfPoints; }
+
+    public Bounds getBounds() { return noOfPoints == 0 ? new Bounds() : new Bounds(minX, minY, maxX - minX, maxY - minY); }
+
+    public boolean contains(final Point point) { return contains(point.getX(), point.getY()); }
+    public boolean contains(final double x, final double y) {
+        if (x < minX || x > maxX || y < minY || y > maxY) { return false; }
+        return crossings(0, noOfEdges, x, y);
+    }
+
+    /**
+     * Tests all given points against the polygon, large inputs are split into chunks
+     * that will be processed in parallel.
+     * @param xs  x coordinates of the points
+     * @param ys  y coordinates of the points
+     * @param out receives true at index i if the point at index i is inside of the polygon
+     */
+    public void classify(final double[] xs, final double[] ys, final boolean[] out) {
+        if (xs.length != ys.length || out.length < xs.length) { throw new IllegalArgumentException("xs and ys must have the same length and out must not be smaller"); }
+        final int length = xs.length;
+        if (length < MIN_CHUNK_SIZE * 2) {
+            classify(xs, ys, out, 0, length);
+            return;
+        }
+        final int noOfChunks = (length + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE;
+        IntStream.range(0, noOfChunks).parallel().forEach(chunk -> {
+            final int from = chunk * MIN_CHUNK_SIZE;
+            classify(xs, ys, out, from, Math.min(length, from + MIN_CHUNK_SIZE));
+        });
+    }
+
+    private void classify(final double[] xs, final double[] ys, final boolean[] out, final int from, final int to) {
+        for (int i = from ; i < to ; i++) { out[i] = contains(xs[i], ys[i]); }
+    }
+
+    /**
+     * Returns the parity of the crossings of the edges in the subtree [from, to) with the ray from (x, y) to the right,
+     * the root of a subtree is its middle element, the right subtree is walked iteratively
+     */
+    private boolean crossings(final int from, final int to, final double x, final double y) {
+        boolean inside = false;
+        int     low    = from;
+        while (low < to) {
+            final int mid = (low + to) >>> 1;
+            // no edge in this subtree reaches up to y
+            if (subtreeHighs[mid] < y) { break; }
+            if (crossings(low, mid, x, y)) { inside = !inside; }
+            // this edge and all edges of the right subtree start below y
+            if (lows[mid] > y) { break; }
+            final int    e  = mid * 4;
+            final double xi = edges[e];
+            final double yi = edges[e + 1];
+            final double xj = edges[e + 2];
+            final double yj = edges[e + 3];
+            if (((yi > y) != (yj > y)) && (x < (xj - xi) * (y - yi) / (yj - yi) + xi)) {
+                inside = !inside;
+            }
+            low = mid + 1;
+        }
+        return inside;
+    }
+
+    /**
+     * Replaces the high of the root of each subtree [from, to) with the largest high of the subtree
+     */
+    private double buildSubtreeHighs(final int from, final int to) {
+        if (from >= to) { return Double.NEGATIVE_INFINITY; }
+        final int mid = (from + to) >>> 1;
+        subtreeHighs[mid] = Math.max(subtreeHighs[mid], Math.max(buildSubtreeHighs(from, mid), buildSubtreeHighs(mid + 1, to)));
+        return subtreeHighs[mid];
+    }
+
+    private static double[] getCoordinates(final List<Double> points, final int offset) {
+        final double[] coordinates = new double[points.size() / 2];
+        for (int i = 0 ; i < coordinates.length ; i++) { coordinates[i] = points.get(i * 2 + offset); }
+        return coordinates;
+    }
+}
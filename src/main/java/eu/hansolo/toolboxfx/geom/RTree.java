@@ -0,0 +1,584 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+
+/**
+ * R-tree for rectangular entries (Bounds or Rectangle) with an attached item.
+ * The tree can be bulk loaded with the Sort-Tile-Recursive algorithm which is
+ * much faster than inserting the entries one by one and creates a better packed
+ * tree. Single entries can be inserted, updated and removed at any time.
+ * Intersection tests are inclusive and behave like Bounds.intersects().
+ * @param <T> type of the item that is attached to each entry
+ */
+public class RTree<T> {
+    public  static final int             DEFAULT_MAX_ENTRIES = 9;
+    private static final Comparator<Box> MIN_X_COMPARATOR    = Comparator.comparingDouble(box -> box.minX);
+    private static final Comparator<Box> MIN_Y_COMPARATOR    = Comparator.comparingDouble(box -> box.minY);
+    private        final int             maxEntries;
+    private        final int             minEntries;
+    private              Node            root;
+    private              int             size;
+
+
+    // ******************** Constructors **************************************
+    public RTree() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+    public RTree(final int maxEntries) {
+        if (maxEntries < 4) { throw new IllegalArgumentException("maxEntries must be at least 4"); }
+        this.maxEntries = maxEntries;
+        this.minEntries = Math.max(2, (int) Math.ceil(maxEntries * 0.4));
+        clear();
+    }
+
+
+    // ******************** Methods *******************************************
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public void clear() {
+        root = new Node(true, 1);
+        size = 0;
+    }
+
+    public Entry<T> insert(final Bounds bounds, final T item) { return insert(new Entry<>(bounds, item)); }
+    public Entry<T> insert(final Rectangle rectangle, final T item) { return insert(new Entry<>(rectangle, item)); }
+    public Entry<T> insert(final double x, final double y, final double width, final double height, final T item) { return insert(new Entry<>(x, y, width, height, item)); }
+    public Entry<T> insert(final Entry<T> entry) {
+        insert(entry, root.height - 1);
+        size++;
+        return entry;
+    }
+
+    /**
+     * Bulk loads the given entries. If the tree already contains entries the
+     * whole tree will be rebuilt with the old and the new entries.
+     * @param entries the entries to add to the tree
+     */
+    public void load(final Collection<Entry<T>> entries) {
+        final List<Box> boxes = new ArrayList<>(size + entries.size());
+        collectEntries(root, boxes);
+        boxes.addAll(entries);
+        build(boxes);
+    }
+
+    /**
+     * Bulk loads the given bounds and items, the bounds at index i belongs to the item at index i.
+     * @param bounds the bounds of the items
+     * @param items  the items
+     * @return the created entries that can be used to update or remove the items later on
+     */
+    public List<Entry<T>> load(final List<Bounds> bounds, final List<T> items) {
+        if (bounds.size() != items.size()) { throw new IllegalArgumentException("bounds and items must have the same size"); }
+        final List<Entry<T>> entries = new ArrayList<>(bounds.size());
+        for (int i = 0 ; i < bounds.size() ; i++) { entries.add(new Entry<>(bounds.get(i), items.get(i))); }
+        load(entries);
+        return entries;
+    }
+
+    /**
+     * Rebuilds the tree from all entries it contains with the bulk loading algorithm.
+     * This is useful after a lot of single inserts and removes.
+     */
+    public void rebuild() {
+        final List<Box> boxes = new ArrayList<>(size);
+        collectEntries(root, boxes);
+        build(boxes);
+    }
+
+    public boolean remove(final Entry<T> entry) {
+        if (null == entry || !remove(root, entry)) { return false; }
+        size--;
+        if (root.children.isEmpty()) { clear(); }
+        return true;
+    }
+
+    /**
+     * Moves the given entry to the new bounds
+     * @param entry  the entry that was returned by insert() or load()
+     * @param x      new x coordinate
+     * @param y      new y coordinate
+     * @param width  new width
+     * @param height new height
+     * @return false if the entry was not found in the tree
+     */
+    public boolean update(final Entry<T> entry, final double x, final double y, final double width, final double height) {
+        if (!remove(entry)) { return false; }
+        entry.set(x, y, width, height);
+        insert(entry);
+        return true;
+    }
+
+    public List<T> getAll() {
+        final List<Box> boxes = new ArrayList<>(size);
+        collectEntries(root, boxes);
+        final List<T> items = new ArrayList<>(size);
+        for (Box box : boxes) { items.add(itemOf(box)); }
+        return items;
+    }
+
+    public List<T> search(final Bounds bounds) { return search(bounds.getMinX(), bounds.getMinY(), bounds.getWidth(), bounds.getHeight()); }
+    public List<T> search(final Rectangle rectangle) { return search(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight()); }
+    public List<T> search(final double x, final double y, final double width, final double height) {
+        final List<T> result = new ArrayList<>();
+        search(x, y, width, height, result);
+        return result;
+    }
+    /**
+     * Adds the items of all entries that intersect the given area to the given list.
+     * The list will not be cleared before, which makes it possible to reuse it between frames.
+     * @param x      x coordinate of the area
+     * @param y      y coordinate of the area
+     * @param width  width of the area
+     * @param height height of the area
+     * @param result list the items will be added to
+     * @return the number of items that have been added
+     */
+    public int search(final double x, final double y, final double width, final double height, final List<? super T> result) {
+        final double maxX  = x + width;
+        final double maxY  = y + height;
+        if (!intersects(root, x, y, maxX, maxY)) { return 0; }
+        final List<Node> stack = new ArrayList<>();
+        int   count = 0;
+        Node  node  = root;
+        while (null != node) {
+            for (Box child : node.children) {
+                if (!intersects(child, x, y, maxX, maxY)) { continue; }
+                if (node.leaf) {
+                    result.add(itemOf(child));
+                    count++;
+                } else if (contains(x, y, maxX, maxY, child)) {
+                    count += collectItems((Node) child, result);
+                } else {
+                    stack.add((Node) child);
+                }
+            }
+            node = stack.isEmpty() ? null : stack.remove(stack.size() - 1);
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if at least one entry intersects the given bounds
+     * @param bounds the area to check
+     * @return true if at least one entry intersects the given bounds
+     */
+    public boolean collides(final Bounds bounds) {
+        final double minX = bounds.getMinX();
+        final double minY = bounds.getMinY();
+        final double maxX = bounds.getMaxX();
+        final double maxY = bounds.getMaxY();
+        if (!intersects(root, minX, minY, maxX, maxY)) { return false; }
+        final List<Node> stack = new ArrayList<>();
+        Node node = root;
+        while (null != node) {
+            for (Box child : node.children) {
+                if (!intersects(child, minX, minY, maxX, maxY)) { continue; }
+                if (node.leaf || contains(minX, minY, maxX, maxY, child)) { return true; }
+                stack.add((Node) child);
+            }
+            node = stack.isEmpty() ? null : stack.remove(stack.size() - 1);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the item of the entry that is closest to the given point, the
+     * distance to an entry that contains the point is 0.
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @return the item of the closest entry or null if the tree is empty
+     */
+    public T nearest(final double x, final double y) {
+        final List<T> result = nearest(x, y, 1, Double.POSITIVE_INFINITY);
+        return result.isEmpty() ? null : result.get(0);
+    }
+    /**
+     * Returns the items of the k entries that are closest to the given point sorted by their distance
+     * @param x           x coordinate of the point
+     * @param y           y coordinate of the point
+     * @param k           max number of items
+     * @param maxDistance only entries within this distance will be returned
+     * @return the items of the closest entries, the closest first
+     */
+    public List<T> nearest(final double x, final double y, final int k, final double maxDistance) {
+        final List<T>                  result      = new ArrayList<>();
+        final double                   maxDistance2 = maxDistance * maxDistance;
+        final PriorityQueue<Candidate> queue        = new PriorityQueue<>(Comparator.comparingDouble(candidate -> candidate.distance));
+        if (k <= 0 || isEmpty()) { return result; }
+        Node node = root;
+        while (null != node) {
+            for (Box child : node.children) {
+                final double distance = squareDistance(child, x, y);
+                if (distance <= maxDistance2) { queue.add(new Candidate(child, node.leaf, distance)); }
+            }
+            while (!queue.isEmpty() && queue.peek().isEntry) {
+                result.add(itemOf(queue.poll().box));
+                if (result.size() == k) { return result; }
+            }
+            final Candidate next = queue.poll();
+            node = null == next ? null : (Node) next.box;
+        }
+        return result;
+    }
+
+    private void insert(final Box box, final int level) {
+        final List<Node> insertPath = new ArrayList<>();
+        final Node       node       = chooseSubtree(box, root, level, insertPath);
+        node.children.add(box);
+        extend(node, box);
+
+        int lvl = level;
+        while (lvl >= 0) {
+            if (insertPath.get(lvl).children.size() > maxEntries) {
+                split(insertPath, lvl);
+                lvl--;
+            } else {
+                break;
+            }
+        }
+        for (int i = lvl ; i >= 0 ; i--) { extend(insertPath.get(i), box); }
+    }
+
+    private Node chooseSubtree(final Box box, final Node start, final int level, final List<Node> path) {
+        Node node = start;
+        while (true) {
+            path.add(node);
+            if (node.leaf || path.size() - 1 == level) { return node; }
+
+            double minArea        = Double.POSITIVE_INFINITY;
+            double minEnlargement = Double.POSITIVE_INFINITY;
+            Node   target         = null;
+            for (Box child : node.children) {
+                final double area        = area(child);
+                final double enlargement = enlargedArea(box, child) - area;
+                if (enlargement < minEnlargement || (enlargement == minEnlargement && area < minArea)) {
+                    minEnlargement = enlargement;
+                    minArea        = Math.min(area, minArea);
+                    target         = (Node) child;
+                }
+            }
+            node = null == target ? (Node) node.children.get(0) : target;
+        }
+    }
+
+    private void split(final List<Node> insertPath, final int level) {
+        final Node node  = insertPath.get(level);
+        final int  count = node.children.size();
+        chooseSplitAxis(node, count);
+        final int  splitIndex = chooseSplitIndex(node, count);
+
+        final Node       newNode = new Node(node.leaf, node.height);
+        final List<Box>  tail    = node.children.subList(splitIndex, count);
+        newNode.children.addAll(tail);
+        tail.clear();
+        calcBounds(node);
+        calcBounds(newNode);
+
+        if (level > 0) {
+            insertPath.get(level - 1).children.add(newNode);
+        } else {
+            final Node newRoot = new Node(false, node.height + 1);
+            newRoot.children.add(node);
+            newRoot.children.add(newNode);
+            calcBounds(newRoot);
+            root = newRoot;
+        }
+    }
+
+    private void chooseSplitAxis(final Node node, final int count) {
+        final double xMargin = allDistMargin(node, count, MIN_X_COMPARATOR);
+        final double yMargin = allDistMargin(node, count, MIN_Y_COMPARATOR);
+        // children are sorted by minY at this point
+        if (xMargin < yMargin) { node.children.sort(MIN_X_COMPARATOR); }
+    }
+
+    private double allDistMargin(final Node node, final int count, final Comparator<Box> comparator) {
+        node.children.sort(comparator);
+        final Box left  = distBounds(node, 0, minEntries);
+        final Box right = distBounds(node, count - minEntries, count);
+        double margin = margin(left) + margin(right);
+        for (int i = minEntries ; i < count - minEntries ; i++) {
+            extend(left, node.children.get(i));
+            margin += margin(left);
+        }
+        for (int i = count - minEntries - 1 ; i >= minEntries ; i--) {
+            extend(right, node.children.get(i));
+            margin += margin(right);
+        }
+        return margin;
+    }
+
+    private int chooseSplitIndex(final Node node, final int count) {
+        int    index      = count - minEntries;
+        double minOverlap = Double.POSITIVE_INFINITY;
+        double minArea    = Double.POSITIVE_INFINITY;
+        for (int i = minEntries ; i <= count - minEntries ; i++) {
+            final Box    box1    = distBounds(node, 0, i);
+            final Box    box2    = distBounds(node, i, count);
+            final double overlap = intersectionArea(box1, box2);
+            final double area    = area(box1) + area(box2);
+            if (overlap < minOverlap) {
+                minOverlap = overlap;
+                index      = i;
+                minArea    = Math.min(area, minArea);
+            } else if (overlap == minOverlap && area < minArea) {
+                minArea = area;
+                index   = i;
+            }
+        }
+        return index;
+    }
+
+    private boolean remove(final Node node, final Entry<T> entry) {
+        if (node.leaf) {
+            for (int i = 0 ; i < node.children.size() ; i++) {
+                if (node.children.get(i) == entry) {
+                    node.children.remove(i);
+                    calcBounds(node);
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int i = 0 ; i < node.children.size() ; i++) {
+            final Node child = (Node) node.children.get(i);
+            if (!contains(child.minX, child.minY, child.maxX, child.maxY, entry) || !remove(child, entry)) { continue; }
+            if (child.children.isEmpty()) { node.children.remove(i); }
+            calcBounds(node);
+            return true;
+        }
+        return false;
+    }
+
+    private void build(final List<Box> boxes) {
+        size = boxes.size();
+        if (boxes.isEmpty()) {
+            clear();
+            return;
+        }
+        root = build(boxes.toArray(new Box[0]), 0, boxes.size() - 1, 0);
+    }
+    private Node build(final Box[] boxes, final int left, final int right, final int height) {
+        final int noOfBoxes = right - left + 1;
+        int       m         = maxEntries;
+        if (noOfBoxes <= m) {
+            final Node leaf = new Node(true, 1);
+            for (int i = left ; i <= right ; i++) { leaf.children.add(boxes[i]); }
+            calcBounds(leaf);
+            return leaf;
+        }
+
+        int h = height;
+        if (h == 0) {
+            // target height of the tree and number of entries in the root node
+            h = (int) Math.ceil(Math.log(noOfBoxes) / Math.log(m));
+            m = (int) Math.ceil(noOfBoxes / Math.pow(m, h - 1));
+        }
+        final Node node = new Node(false, h);
+
+        // split the boxes into vertical slices and each slice into tiles
+        final int n2 = (int) Math.ceil((double) noOfBoxes / m);
+        final int n1 = n2 * (int) Math.ceil(Math.sqrt(m));
+        Arrays.sort(boxes, left, right + 1, MIN_X_COMPARATOR);
+        for (int i = left ; i <= right ; i += n1) {
+            final int right2 = Math.min(i + n1 - 1, right);
+            Arrays.sort(boxes, i, right2 + 1, MIN_Y_COMPARATOR);
+            for (int j = i ; j <= right2 ; j += n2) {
+                final int right3 = Math.min(j + n2 - 1, right2);
+                node.children.add(build(boxes, j, right3, h - 1));
+            }
+        }
+        calcBounds(node);
+        return node;
+    }
+
+    private int collectItems(final Node start, final List<? super T> result) {
+        final List<Box> boxes = new ArrayList<>();
+        collectEntries(start, boxes);
+        for (Box box : boxes) { result.add(itemOf(box)); }
+        return boxes.size();
+    }
+
+    /**
+     * Returns the item of a box from a leaf node, leaf nodes only hold the entries of this tree so the cast is safe
+     */
+    @SuppressWarnings("unchecked")
+    private T itemOf(final Box box) { return ((Entry<T>) box).item; }
+
+    private static void collectEntries(final Node start, final List<Box> result) {
+        final List<Node> stack = new ArrayList<>();
+        Node node = start;
+        while (null != node) {
+            if (node.leaf) {
+                result.addAll(node.children);
+            } else {
+                for (Box child : node.children) { stack.add((Node) child); }
+            }
+            node = stack.isEmpty() ? null : stack.remove(stack.size() - 1);
+        }
+    }
+
+    private static Box distBounds(final Node node, final int from, final int to) {
+        final Box box = new Box();
+        box.empty();
+        for (int i = from ; i < to ; i++) { extend(box, node.children.get(i)); }
+        return box;
+    }
+
+    private static void calcBounds(final Node node) {
+        node.empty();
+        for (Box child : node.children) { extend(node, child); }
+    }
+
+    private static void extend(final Box target, final Box box) {
+        target.minX = Math.min(target.minX, box.minX);
+        target.minY = Math.min(target.minY, box.minY);
+        target.maxX = Math.max(target.maxX, box.maxX);
+        target.maxY = Math.max(target.maxY, box.maxY);
+    }
+
+    private static double area(final Box box) { return (box.maxX - box.minX) * (box.maxY - box.minY); }
+
+    private static double margin(final Box box) { return (box.maxX - box.minX) + (box.maxY - box.minY); }
+
+    private static double enlargedArea(final Box box1, final Box box2) {
+        return (Math.max(box2.maxX, box1.maxX) - Math.min(box2.minX, box1.minX)) *
+               (Math.max(box2.maxY, box1.maxY) - Math.min(box2.minY, box1.minY));
+    }
+
+    private static double intersectionArea(final Box box1, final Box box2) {
+        final double minX = Math.max(box1.minX, box2.minX);
+        final double minY = Math.max(box1.minY, box2.minY);
+        final double maxX = Math.min(box1.maxX, box2.maxX);
+        final double maxY = Math.min(box1.maxY, box2.maxY);
+        return Math.max(0, maxX - minX) * Math.max(0, maxY - minY);
+    }
+
+    private static boolean intersects(final Box box, final double minX, final double minY, final double maxX, final double maxY) {
+        return box.maxX >= minX && box.maxY >= minY && box.minX <= maxX && box.minY <= maxY;
+    }
+
+    private static boolean contains(final double minX, final double minY, final double maxX, final double maxY, final Box box) {
+        return minX <= box.minX && minY <= box.minY && box.maxX <= maxX && box.maxY <= maxY;
+    }
+
+    private static double squareDistance(final Box box, final double x, final double y) {
+        final double dx = Math.max(0, Math.max(box.minX - x, x - box.maxX));
+        final double dy = Math.max(0, Math.max(box.minY - y, y - box.maxY));
+        return dx * dx + dy * dy;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class Box {
+        double minX;
+        double minY;
+        double maxX;
+        double maxY;
+
+
+        void empty() {
+            minX = Double.POSITIVE_INFINITY;
+            minY = Double.POSITIVE_INFINITY;
+            maxX = Double.NEGATIVE_INFINITY;
+            maxY = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    private static class Node extends Box {
+        private final List<Box> children;
+        private final boolean   leaf;
+        private final int       height;
+
+
+        // ******************** Constructors **********************************
+        Node(final boolean leaf, final int height) {
+            this.children = new ArrayList<>();
+            this.leaf     = leaf;
+            this.height   = height;
+            empty();
+        }
+    }
+
+    private static class Candidate {
+        private final Box     box;
+        private final boolean isEntry;
+        private final double  distance;
+
+
+        // ******************** Constructors **********************************
+        Candidate(final Box box, final boolean isEntry, final double distance) {
+            this.box      = box;
+            this.isEntry  = isEntry;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * An entry in the tree, the bounds of an entry can only be changed by RTree.update()
+     * @param <T> type of the attached item
+     */
+    public static class Entry<T> extends Box {
+        private final T item;
+
+
+        // ******************** Constructors **********************************
+        public Entry(final Bounds bounds, final T item) {
+            this(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight(), item);
+        }
+        public Entry(final Rectangle rectangle, final T item) {
+            this(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight(), item);
+        }
+        public Entry(final double x, final double y, final double width, final double height, final T item) {
+            this.item = item;
+            set(x, y, width, height);
+        }
+
+
+        // ******************** Methods ***************************************
+        public T getItem() { return item; }
+
+        public double getX() { return minX; }
+
+        public double getY() { return minY; }
+
+        public double getWidth() { return maxX - minX; }
+
+        public double getHeight() { return maxY - minY; }
+
+        public Bounds getBounds() { return new Bounds(minX, minY, maxX - minX, maxY - minY); }
+
+        private void set(final double x, final double y, final double width, final double height) {
+            this.minX = x;
+            this.minY = y;
+            this.maxX = x + width;
+            this.maxY = y + height;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+
+/**
+ * Hit testing for the ring segments of donut and sunburst charts that share one center.
+ * The segments are grouped into rings by their inner radius and stored sorted by their start angle, a query
+ * computes the radius and angle of the point once and uses a binary search to find the
+ * segment. Radii and angles are interpreted the same way as in HelperFX.isInRingSegment()
+ * (0 degrees at 12 o'clock, borders included) but angles are wrapped around 360 degrees,
+ * so a segment that starts at 350 degrees with an angle of 20 degrees also covers 0 - 10 degrees.
+ * Segments with the same inner radius should not overlap, on a shared border the segment with
+ * the larger start angle wins.
+ * The index is prepared lazily on the first query after it has been modified, prepared
+ * indices can be queried from different threads.
+ */
+public class RadialLayoutIndex {
+    public  static final int      NONE           = -1;
+    private static final double   ANGLE_OFFSET   = 90.0;
+    private static final int      MIN_CHUNK_SIZE = 4096;
+    private              double   centerX;
+    private              double   centerY;
+    private              int      noOfSegments;
+    private              double[] innerRadii;
+    private              double[] outerRadii;
+    private              double[] startAngles;
+    private              double[] segmentAngles;
+    private volatile     boolean  dirty;
+    // prepared data
+    private              double[] ringInnerRadii;
+    private              double[] ringMaxOuterRadii;
+    private              int[]    ringOffsets;
+    private              double[] pieceStarts;
+    private              double[] pieceEnds;
+    private              double[] pieceOuterRadii;
+    private              int[]    pieceSegments;
+
+
+    // ******************** Constructors **************************************
+    public RadialLayoutIndex() {
+        this(0, 0);
+    }
+    public RadialLayoutIndex(final double centerX, final double centerY) {
+        this.centerX       = centerX;
+        this.centerY       = centerY;
+        this.noOfSegments  = 0;
+        this.innerRadii    = new double[16];
+        this.outerRadii    = new double[16];
+        this.startAngles   = new double[16];
+        this.segmentAngles = new double[16];
+        this.dirty         = true;
+    }
+
+
+    // ******************** Methods *******************************************
+    public double getCenterX() { return centerX; }
+
+    public double getCenterY() { return centerY; }
+
+    public void setCenter(final double centerX, final double centerY) {
+        this.centerX = centerX;
+        this.centerY = centerY;
+    }
+
+    public int getNoOfSegments() { return noOfSegments; }
+
+    /**
+     * Adds a ring segment, the parameters are the same as in HelperFX.isInRingSegment()
+     * @param outerRadius  outer radius of the segment
+     * @param innerRadius  inner radius of the segment (0 for a sector)
+     * @param startAngle   start angle in degrees
+     * @param segmentAngle angular extent in degrees
+     * @return the index of the segment
+     */
+    public int addSegment(final double outerRadius, final double innerRadius, final double startAngle, final double segmentAngle) {
+        if (innerRadius < 0 || outerRadius < innerRadius) { throw new IllegalArgumentException("Radii must satisfy 0 <= innerRadius <= outerRadius"); }
+        if (segmentAngle < 0) { throw new IllegalArgumentException("segmentAngle must not be negative"); }
+        if (noOfSegments == innerRadii.length) {
+            final int capacity = noOfSegments * 2;
+            innerRadii    = Arrays.copyOf(innerRadii, capacity);
+            outerRadii    = Arrays.copyOf(outerRadii, capacity);
+            startAngles   = Arrays.copyOf(startAngles, capacity);
+            segmentAngles = Arrays.copyOf(segmentAngles, capacity);
+        }
+        innerRadii[noOfSegments]    = innerRadius;
+        outerRadii[noOfSegments]    = outerRadius;
+        startAngles[noOfSegments]   = startAngle;
+        segmentAngles[noOfSegments] = segmentAngle;
+        dirty = true;
+        return noOfSegments++;
+    }
+
+    public void clear() {
+        noOfSegments = 0;
+        dirty        = true;
+    }
+
+    /**
+     * Returns the index of the segment that contains the given point
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @return the index of the segment or -1 if no segment contains the point
+     */
+    public int indexOf(final double x, final double y) {
+        prepare();
+        return find(x, y);
+    }
+
+    /**
+     * Looks up the segment index for each of the given points, large inputs
+     * are split into chunks that will be processed in parallel.
+     * @param xs  x coordinates of the points
+     * @param ys  y coordinates of the points
+     * @param out receives the segment index (or -1) for the point at the same index
+     */
+    public void indexOf(final double[] xs, final double[] ys, final int[] out) {
+        if (xs.length != ys.length || out.length < xs.length) { throw new IllegalArgumentException("xs and ys must have the same length and out must not be smaller"); }
+        prepare();
+        final int length = xs.length;
+        if (length < MIN_CHUNK_SIZE * 2) {
+            for (int i = 0 ; i < length ; i++) { out[i] = find(xs[i], ys[i]); }
+            return;
+        }
+        final int noOfChunks = (length + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE;
+        IntStream.range(0, noOfChunks).parallel().forEach(chunk -> {
+            final int to = Math.min(length, (chunk + 1) * MIN_CHUNK_SIZE);
+            for (int i = chunk * MIN_CHUNK_SIZE ; i < to ; i++) { out[i] = find(xs[i], ys[i]); }
+        });
+    }
+
+    private int find(final double x, final double y) {
+        final double deltaX = x - centerX;
+        final double deltaY = y - centerY;
+        final double radius = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        final int    ring   = lastIndexNotAbove(ringInnerRadii, 0, ringInnerRadii.length, radius);
+        if (ring < 0) { return NONE; }
+
+        // same angle calculation as in HelperFX.getAngleFromXY()
+        double theta = Math.atan2(deltaY / radius, deltaX / radius);
+        theta        = Double.compare(theta, 0.0) >= 0 ? Math.toDegrees(theta) : Math.toDegrees(theta) + 360.0;
+        final double angle = radius == 0 ? 0 : (theta + ANGLE_OFFSET) % 360;
+
+        for (int r = ring ; r >= 0 ; r--) {
+            if (radius > ringMaxOuterRadii[r]) { continue; }
+            final int from  = ringOffsets[r];
+            final int piece = lastIndexNotAbove(pieceStarts, from, ringOffsets[r + 1], angle);
+            if (piece >= from && angle <= pieceEnds[piece] && radius <= pieceOuterRadii[piece]) { return pieceSegments[piece]; }
+        }
+        return NONE;
+    }
+
+    private void prepare() {
+        if (!dirty) { return; }
+        synchronized (this) {
+            if (!dirty) { return; }
+
+            // sort the segments by ring and start angle
+            final Integer[] order       = new Integer[noOfSegments];
+            final double[]  normalStart = new double[noOfSegments];
+            for (int i = 0 ; i < noOfSegments ; i++) {
+                order[i]       = i;
+                normalStart[i] = normalize(ANGLE_OFFSET - startAngles[i]);
+            }
+            Arrays.sort(order, (i1, i2) -> {
+                int result = Double.compare(innerRadii[i1], innerRadii[i2]);
+                if (result == 0) { result = Double.compare(normalStart[i1], normalStart[i2]); }
+                return result;
+            });
+
+            final double[] rInner  = new double[noOfSegments];
+            final double[] rOuter  = new double[noOfSegments];
+            final double[] outer   = new double[noOfSegments * 2];
+            final int[]    offsets = new int[noOfSegments + 1];
+            final double[] starts  = new double[noOfSegments * 2];
+            final double[] ends    = new double[noOfSegments * 2];
+            final int[]    ids     = new int[noOfSegments * 2];
+            int noOfRings  = 0;
+            int noOfPieces = 0;
+            for (int o = 0 ; o < noOfSegments ; o++) {
+                final int segment = order[o];
+                if (noOfRings == 0 || rInner[noOfRings - 1] != innerRadii[segment]) {
+                    offsets[noOfRings] = noOfPieces;
+                    rInner[noOfRings]  = innerRadii[segment];
+                    noOfRings++;
+                }
+                rOuter[noOfRings - 1] = Math.max(rOuter[noOfRings - 1], outerRadii[segment]);
+                final double start = normalStart[segment];
+                final double end   = start + segmentAngles[segment];
+                if (segmentAngles[segment] >= 360) {
+                    noOfPieces = addPiece(starts, ends, outer, ids, noOfPieces, 0, 360, segment);
+                } else if (end > 360) {
+                    // segment crosses 0 degrees, split it in two pieces
+                    noOfPieces = addPiece(starts, ends, outer, ids, noOfPieces, 0, end - 360, segment);
+                    noOfPieces = addPiece(starts, ends, outer, ids, noOfPieces, start, 360, segment);
+                } else {
+                    noOfPieces = addPiece(starts, ends, outer, ids, noOfPieces, start, end, segment);
+                }
+            }
+            offsets[noOfRings] = noOfPieces;
+
+            // split pieces were added out of order
+            for (int r = 0 ; r < noOfRings ; r++) { sortPieces(starts, ends, outer, ids, offsets[r], offsets[r + 1]); }
+
+            ringInnerRadii    = Arrays.copyOf(rInner, noOfRings);
+            ringMaxOuterRadii = Arrays.copyOf(rOuter, noOfRings);
+            ringOffsets       = Arrays.copyOf(offsets, noOfRings + 1);
+            pieceStarts       = Arrays.copyOf(starts, noOfPieces);
+            pieceEnds         = Arrays.copyOf(ends, noOfPieces);
+            pieceOuterRadii   = Arrays.copyOf(outer, noOfPieces);
+            pieceSegments     = Arrays.copyOf(ids, noOfPieces);
+            dirty             = false;
+        }
+    }
+
+    private int addPiece(final double[] starts, final double[] ends, final double[] outer, final int[] ids, final int index, final double start, final double end, final int segment) {
+        starts[index] = start;
+        ends[index]   = end;
+        outer[index]  = outerRadii[segment];
+        ids[index]    = segment;
+        return index + 1;
+    }
+
+    private static void sortPieces(final double[] starts, final double[] ends, final double[] outer, final int[] ids, final int from, final int to) {
+        // insertion sort, the pieces are almost sorted
+        for (int i = from + 1 ; i < to ; i++) {
+            final double start       = starts[i];
+            final double end         = ends[i];
+            final double outerRadius = outer[i];
+            final int    id          = ids[i];
+            int j = i - 1;
+            while (j >= from && starts[j] > start) {
+                starts[j + 1] = starts[j];
+                ends[j + 1]   = ends[j];
+                outer[j + 1]  = outer[j];
+                ids[j + 1]    = ids[j];
+                j--;
+            }
+            starts[j + 1] = start;
+            ends[j + 1]   = end;
+            outer[j + 1]  = outerRadius;
+            ids[j + 1]    = id;
+        }
+    }
+
+    /**
+     * Returns the index of the last value in the sorted range that is smaller or equal to the given value
+     * @return the index or from - 1 if all values are larger than the given value
+     */
+    private static int lastIndexNotAbove(final double[] values, final int from, final int to, final double value) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (values[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - 1;
+    }
+
+    private static double normalize(final double angle) {
+        final double normalized = angle % 360;
+        return normalized < 0 ? normalized + 360 : normalized;
+    }
+}
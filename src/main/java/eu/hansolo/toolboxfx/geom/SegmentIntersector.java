@@ -0,0 +1,385 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+/**
+ * Finds the intersections of a set of line segments with a Bentley-Ottmann
+ * plane sweep from left to right in O((n + k) log n) where n is the number of
+ * segments and k the number of intersections.
+ * Segments that only touch each other, e.g. consecutive segments of a polyline,
+ * are reported as well unless ignoreEndpointTouches is set. Collinear segments
+ * that overlap are reported at the first point where they overlap.
+ * Segments with a length of 0 are ignored.
+ */
+public class SegmentIntersector {
+    private static final int      LOW  = -1;
+    private static final int      HIGH = -2;
+    private              double[] x1s;
+    private              double[] y1s;
+    private              double[] x2s;
+    private              double[] y2s;
+    private              int      size;
+    private              boolean  ignoreEndpointTouches;
+    // sweep state
+    private              double   sweepX;
+    private              double   sweepY;
+    private              double   epsilon;
+
+
+    // ******************** Constructors **************************************
+    public SegmentIntersector() {
+        x1s  = new double[16];
+        y1s  = new double[16];
+        x2s  = new double[16];
+        y2s  = new double[16];
+        size = 0;
+        ignoreEndpointTouches = false;
+    }
+
+
+    // ******************** Methods *******************************************
+    public int size() { return size; }
+
+    public boolean isIgnoreEndpointTouches() { return ignoreEndpointTouches; }
+    /**
+     * Defines if segments that only touch at a point that is an endpoint of all of them should be ignored
+     * @param ignore if true, only intersections that are inside of at least one segment will be reported
+     */
+    public void setIgnoreEndpointTouches(final boolean ignore) { ignoreEndpointTouches = ignore; }
+
+    public int addSegment(final Point p1, final Point p2) { return addSegment(p1.getX(), p1.getY(), p2.getX(), p2.getY()); }
+    /**
+     * Adds a segment
+     * @param x1 x coordinate of the start point
+     * @param y1 y coordinate of the start point
+     * @param x2 x coordinate of the end point
+     * @param y2 y coordinate of the end point
+     * @return the id of the segment
+     */
+    public int addSegment(final double x1, final double y1, final double x2, final double y2) {
+        if (size == x1s.length) {
+            final int capacity = size * 2;
+            x1s = Arrays.copyOf(x1s, capacity);
+            y1s = Arrays.copyOf(y1s, capacity);
+            x2s = Arrays.copyOf(x2s, capacity);
+            y2s = Arrays.copyOf(y2s, capacity);
+        }
+        // store the segments from left to right (bottom to top if vertical)
+        if (x1 < x2 || (x1 == x2 && y1 <= y2)) {
+            x1s[size] = x1;
+            y1s[size] = y1;
+            x2s[size] = x2;
+            y2s[size] = y2;
+        } else {
+            x1s[size] = x2;
+            y1s[size] = y2;
+            x2s[size] = x1;
+            y2s[size] = y1;
+        }
+        return size++;
+    }
+
+    /**
+     * Adds the segments (x1s[i], y1s[i]) - (x2s[i], y2s[i])
+     * @param x1s x coordinates of the start points
+     * @param y1s y coordinates of the start points
+     * @param x2s x coordinates of the end points
+     * @param y2s y coordinates of the end points
+     * @return the id of the first segment, the following segments have consecutive ids
+     */
+    public int addSegments(final double[] x1s, final double[] y1s, final double[] x2s, final double[] y2s) {
+        if (x1s.length != y1s.length || x1s.length != x2s.length || x1s.length != y2s.length) { throw new IllegalArgumentException("All coordinate arrays must have the same length"); }
+        final int firstId = size;
+        for (int i = 0 ; i < x1s.length ; i++) { addSegment(x1s[i], y1s[i], x2s[i], y2s[i]); }
+        return firstId;
+    }
+
+    /**
+     * Adds the segments of the given polyline
+     * @param xs x coordinates of the polyline
+     * @param ys y coordinates of the polyline
+     * @return the id of the first segment, the following segments have consecutive ids
+     */
+    public int addPolyline(final double[] xs, final double[] ys) {
+        if (xs.length != ys.length) { throw new IllegalArgumentException("xs and ys must have the same length"); }
+        final int firstId = size;
+        for (int i = 1 ; i < xs.length ; i++) { addSegment(xs[i - 1], ys[i - 1], xs[i], ys[i]); }
+        return firstId;
+    }
+    public int addPolyline(final List<Point> points) {
+        final int firstId = size;
+        for (int i = 1 ; i < points.size() ; i++) { addSegment(points.get(i - 1), points.get(i)); }
+        return firstId;
+    }
+
+    public void clear() { size = 0; }
+
+    /**
+     * Returns all intersection points together with the ids of the segments that meet there
+     * @return all intersections ordered from left to right
+     */
+    public List<Intersection> findIntersections() {
+        final List<Intersection> intersections = new ArrayList<>();
+        sweep(intersections, false);
+        return intersections;
+    }
+
+    /**
+     * Returns true if at least two segments intersect, the sweep stops at the first intersection
+     * @return true if at least two segments intersect
+     */
+    public boolean hasIntersection() { return sweep(null, true); }
+
+    private boolean sweep(final List<Intersection> result, final boolean stopAtFirst) {
+        double scale = 1;
+        for (int i = 0 ; i < size ; i++) {
+            scale = Math.max(scale, Math.max(Math.max(Math.abs(x1s[i]), Math.abs(y1s[i])), Math.max(Math.abs(x2s[i]), Math.abs(y2s[i]))));
+        }
+        epsilon = scale * 1e-9;
+
+        final TreeMap<EventPoint, EventPoint> queue = new TreeMap<>();
+        for (int i = 0 ; i < size ; i++) {
+            if (x1s[i] == x2s[i] && y1s[i] == y2s[i]) { continue; }
+            addEvent(queue, x1s[i], y1s[i]).upper.add(i);
+            addEvent(queue, x2s[i], y2s[i]);
+        }
+
+        final TreeSet<Integer> status       = new TreeSet<>(new StatusComparator());
+        final Set<Long>        reported     = new HashSet<>();
+        final List<Integer>    lowerOrCross = new ArrayList<>();
+        boolean found = false;
+        while (!queue.isEmpty()) {
+            final EventPoint p = queue.pollFirstEntry().getKey();
+            sweepX = p.x;
+            sweepY = p.y;
+
+            // segments in the status that contain p (ending at p or crossing p)
+            lowerOrCross.clear();
+            final NavigableSet<Integer> atP = status.subSet(LOW, true, HIGH, true);
+            lowerOrCross.addAll(atP);
+
+            final int noOfInvolved = p.upper.size() + lowerOrCross.size();
+            if (noOfInvolved > 1) {
+                boolean hasInterior = false;
+                for (int id : lowerOrCross) {
+                    if (!isEndpoint(id, p.x, p.y)) {
+                        hasInterior = true;
+                        break;
+                    }
+                }
+                if (hasInterior || !ignoreEndpointTouches) {
+                    final int[] ids = new int[noOfInvolved];
+                    int count = 0;
+                    for (int i = 0 ; i < p.upper.size() ; i++) { ids[count++] = p.upper.get(i); }
+                    for (int id : lowerOrCross) { ids[count++] = id; }
+                    Arrays.sort(ids);
+                    if (addPairs(reported, ids)) {
+                        if (stopAtFirst) { return true; }
+                        result.add(new Intersection(p.x, p.y, ids));
+                        found = true;
+                    }
+                }
+            }
+
+            // remove the segments that end at or cross p and insert the ones that start at or cross p
+            // (iterator removal doesn't use the comparator which is ambiguous for segments through p)
+            for (Iterator<Integer> iterator = atP.iterator() ; iterator.hasNext() ; ) {
+                iterator.next();
+                iterator.remove();
+            }
+            Integer lowest  = null;
+            Integer highest = null;
+            for (int i = 0 ; i < p.upper.size() ; i++) { status.add(p.upper.get(i)); }
+            for (int id : lowerOrCross) {
+                if (!isRightEndpoint(id, p.x, p.y)) { status.add(id); }
+            }
+            final NavigableSet<Integer> inserted = status.subSet(LOW, true, HIGH, true);
+            if (!inserted.isEmpty()) {
+                lowest  = inserted.first();
+                highest = inserted.last();
+            }
+
+            if (null == lowest) {
+                final Integer below = status.lower(LOW);
+                final Integer above = status.higher(HIGH);
+                if (null != below && null != above) { findNewEvent(queue, below, above, p); }
+            } else {
+                final Integer below = status.lower(lowest);
+                final Integer above = status.higher(highest);
+                if (null != below) { findNewEvent(queue, below, lowest, p); }
+                if (null != above) { findNewEvent(queue, highest, above, p); }
+            }
+        }
+        return found;
+    }
+
+    private void findNewEvent(final TreeMap<EventPoint, EventPoint> queue, final int a, final int b, final EventPoint p) {
+        final double ax = x2s[a] - x1s[a];
+        final double ay = y2s[a] - y1s[a];
+        final double bx = x2s[b] - x1s[b];
+        final double by = y2s[b] - y1s[b];
+        final double d  = ax * by - ay * bx;
+        if (d == 0) { return; } // parallel or collinear, overlaps are found at the endpoints
+
+        final double cx = x1s[b] - x1s[a];
+        final double cy = y1s[b] - y1s[a];
+        final double t  = (cx * by - cy * bx) / d;
+        final double u  = (cx * ay - cy * ax) / d;
+        if (t < 0 || t > 1 || u < 0 || u > 1) { return; }
+
+        // snap to endpoints to hit existing events exactly
+        final double x;
+        final double y;
+        if (t == 0) {
+            x = x1s[a]; y = y1s[a];
+        } else if (t == 1) {
+            x = x2s[a]; y = y2s[a];
+        } else if (u == 0) {
+            x = x1s[b]; y = y1s[b];
+        } else if (u == 1) {
+            x = x2s[b]; y = y2s[b];
+        } else {
+            x = x1s[a] + t * ax;
+            y = y1s[a] + t * ay;
+        }
+        if (x > p.x || (x == p.x && y > p.y)) { addEvent(queue, x, y); }
+    }
+
+    private double yAt(final int id) {
+        if (id < 0) { return sweepY; }
+        final double x1 = x1s[id];
+        final double x2 = x2s[id];
+        if (x1 == x2) { return Math.max(y1s[id], Math.min(y2s[id], sweepY)); }
+        if (sweepX <= x1) { return y1s[id]; }
+        if (sweepX >= x2) { return y2s[id]; }
+        return y1s[id] + (sweepX - x1) * (y2s[id] - y1s[id]) / (x2 - x1);
+    }
+
+    private double slope(final int id) {
+        if (id == LOW) { return Double.NEGATIVE_INFINITY; }
+        if (id == HIGH) { return Double.POSITIVE_INFINITY; }
+        final double dx = x2s[id] - x1s[id];
+        // vertical segments are above all other segments that pass through the same point
+        return dx == 0 ? Double.MAX_VALUE : (y2s[id] - y1s[id]) / dx;
+    }
+
+    private boolean isEndpoint(final int id, final double x, final double y) {
+        return (x1s[id] == x && y1s[id] == y) || isRightEndpoint(id, x, y);
+    }
+
+    private boolean isRightEndpoint(final int id, final double x, final double y) {
+        return Math.abs(x2s[id] - x) <= epsilon && Math.abs(y2s[id] - y) <= epsilon;
+    }
+
+    private static EventPoint addEvent(final TreeMap<EventPoint, EventPoint> queue, final double x, final double y) {
+        final EventPoint key   = new EventPoint(x, y);
+        final EventPoint event = queue.get(key);
+        if (null != event) { return event; }
+        queue.put(key, key);
+        return key;
+    }
+
+    private static boolean addPairs(final Set<Long> reported, final int[] ids) {
+        boolean added = false;
+        for (int i = 0 ; i < ids.length ; i++) {
+            for (int j = i + 1 ; j < ids.length ; j++) {
+                if (reported.add(((long) ids[i] << 32) | ids[j])) { added = true; }
+            }
+        }
+        return added;
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private class StatusComparator implements Comparator<Integer> {
+        @Override public int compare(final Integer id1, final Integer id2) {
+            if (id1.intValue() == id2.intValue()) { return 0; }
+            final double y1 = yAt(id1);
+            final double y2 = yAt(id2);
+            if (Math.abs(y1 - y2) > epsilon) { return y1 < y2 ? -1 : 1; }
+            // same y at the sweep line -> order them by their direction to the right of the sweep line
+            final int result = Double.compare(slope(id1), slope(id2));
+            return result != 0 ? result : Integer.compare(id1, id2);
+        }
+    }
+
+    private static class EventPoint implements Comparable<EventPoint> {
+        private final double  x;
+        private final double  y;
+        private final IntList upper;
+
+
+        // ******************** Constructors **********************************
+        EventPoint(final double x, final double y) {
+            this.x     = x;
+            this.y     = y;
+            this.upper = new IntList(2);
+        }
+
+
+        // ******************** Methods ***************************************
+        @Override public int compareTo(final EventPoint other) {
+            final int result = Double.compare(x, other.x);
+            return result != 0 ? result : Double.compare(y, other.y);
+        }
+    }
+
+    /**
+     * An intersection point and the ids of all segments that meet at this point
+     */
+    public static class Intersection {
+        private final double x;
+        private final double y;
+        private final int[]  segmentIds;
+
+
+        // ******************** Constructors **********************************
+        Intersection(final double x, final double y, final int[] segmentIds) {
+            this.x          = x;
+            this.y          = y;
+            this.segmentIds = segmentIds;
+        }
+
+
+        // ******************** Methods ***************************************
+        public double getX() { return x; }
+
+        public double getY() { return y; }
+
+        public Point getPoint() { return new Point(x, y); }
+
+        /**
+         * Returns the ids of the segments that meet at this point in ascending order
+         * @return the ids of the segments that meet at this point
+         */
+        public int[] getSegmentIds() { return segmentIds.clone(); }
+    }
+}
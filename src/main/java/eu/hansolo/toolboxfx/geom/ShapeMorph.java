@@ -0,0 +1,195 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import javafx.scene.shape.Path;
+
+import java.util.List;
+
+
+/**
+ * Morphs one outline into another, e.g. to animate a chart from the old to the new data.
+ * Both outlines are resampled once to the same number of points that are equally spaced
+ * along the outline. For closed outlines the target is brought into the same winding
+ * order and rotated so that it starts at the point nearest to the start of the source.
+ * Every frame is then just a linear interpolation into a reused buffer.
+ */
+public class ShapeMorph {
+    private final int         noOfPoints;
+    private final boolean     closed;
+    private final double[]    fromXs;
+    private final double[]    fromYs;
+    private final double[]    deltaXs;
+    private final double[]    deltaYs;
+    private final PointBuffer result;
+
+
+    // ******************** Constructors **************************************
+    public ShapeMorph(final List<Point> from, final List<Point> to, final boolean closed) {
+        this(new PointBuffer(from), new PointBuffer(to), closed);
+    }
+    public ShapeMorph(final PointBuffer from, final PointBuffer to, final boolean closed) {
+        this(from, to, closed, Math.max(2, Math.max(from.size(), to.size())));
+    }
+    /**
+     * Creates a morph between the given outlines
+     * @param from       points of the start outline
+     * @param to         points of the end outline
+     * @param closed     true if the outlines are closed (the first point doesn't need to be repeated)
+     * @param noOfPoints number of points of the morphed outline, at least 2
+     */
+    public ShapeMorph(final PointBuffer from, final PointBuffer to, final boolean closed, final int noOfPoints) {
+        if (from.isEmpty() || to.isEmpty()) { throw new IllegalArgumentException("from and to need at least one point"); }
+        if (noOfPoints < 2) { throw new IllegalArgumentException("noOfPoints must be at least 2"); }
+        this.noOfPoints = noOfPoints;
+        this.closed     = closed;
+        this.fromXs     = new double[noOfPoints];
+        this.fromYs     = new double[noOfPoints];
+        this.deltaXs    = new double[noOfPoints];
+        this.deltaYs    = new double[noOfPoints];
+        this.result     = new PointBuffer(noOfPoints);
+
+        final double[] toXs = new double[noOfPoints];
+        final double[] toYs = new double[noOfPoints];
+        resample(from, closed, fromXs, fromYs);
+        resample(to, closed, toXs, toYs);
+        if (closed) { align(toXs, toYs); }
+
+        for (int i = 0 ; i < noOfPoints ; i++) {
+            deltaXs[i] = toXs[i] - fromXs[i];
+            deltaYs[i] = toYs[i] - fromYs[i];
+            result.add(fromXs[i], fromYs[i]);
+        }
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Creates a morph between the outlines of the given paths (e.g. the results of HelperFX.smoothPath()),
+     * the curves are flattened with the given tolerance before they are resampled
+     * @param from       the start path
+     * @param to         the end path
+     * @param noOfPoints number of points of the morphed outline, at least 2
+     * @param tolerance  max distance between the curves and the flattened outlines
+     * @return the morph between the given paths, closed if both paths are closed
+     */
+    public static ShapeMorph fromPaths(final Path from, final Path to, final int noOfPoints, final double tolerance) {
+        final CubicPath fromPath = CubicPath.fromPath(from);
+        final CubicPath toPath   = CubicPath.fromPath(to);
+        return new ShapeMorph(FlattenedShape.flatten(fromPath, tolerance), FlattenedShape.flatten(toPath, tolerance), fromPath.isClosed() && toPath.isClosed(), noOfPoints);
+    }
+
+    public int getNoOfPoints() { return noOfPoints; }
+
+    public boolean isClosed() { return closed; }
+
+    /**
+     * Interpolates between the outlines, the returned buffer is reused by every call
+     * @param fraction 0 for the start outline, 1 for the end outline
+     * @return the buffer with the interpolated points
+     */
+    public PointBuffer interpolate(final double fraction) {
+        for (int i = 0 ; i < noOfPoints ; i++) { result.set(i, fromXs[i] + deltaXs[i] * fraction, fromYs[i] + deltaYs[i] * fraction); }
+        return result;
+    }
+    /**
+     * Interpolates between the outlines into the given arrays
+     * @param fraction 0 for the start outline, 1 for the end outline
+     * @param xs       receives the x coordinates, needs at least getNoOfPoints() elements
+     * @param ys       receives the y coordinates, needs at least getNoOfPoints() elements
+     */
+    public void interpolate(final double fraction, final double[] xs, final double[] ys) {
+        if (xs.length < noOfPoints || ys.length < noOfPoints) { throw new IllegalArgumentException("xs and ys need at least " + noOfPoints + " elements"); }
+        for (int i = 0 ; i < noOfPoints ; i++) {
+            xs[i] = fromXs[i] + deltaXs[i] * fraction;
+            ys[i] = fromYs[i] + deltaYs[i] * fraction;
+        }
+    }
+
+    private void resample(final PointBuffer points, final boolean closed, final double[] xs, final double[] ys) {
+        int size = points.size();
+        // a repeated start point of a closed outline is covered by the closing segment
+        if (closed && size > 1 && points.getX(size - 1) == points.getX(0) && points.getY(size - 1) == points.getY(0)) { size--; }
+        final CubicPath path = new CubicPath(size);
+        path.moveTo(points.getX(0), points.getY(0));
+        for (int i = 1 ; i < size ; i++) { path.lineTo(points.getX(i), points.getY(i)); }
+        if (closed && size > 1) { path.close(); }
+        if (path.getNoOfSegments() == 0) {
+            for (int i = 0 ; i < noOfPoints ; i++) {
+                xs[i] = points.getX(0);
+                ys[i] = points.getY(0);
+            }
+            return;
+        }
+        // the chords of the lines are exact, one sample per segment is enough
+        final ArcLengthTable table = new ArcLengthTable(path, 1);
+        if (closed) {
+            table.resample(0, table.getLength() / noOfPoints, noOfPoints, xs, ys);
+        } else {
+            table.resample(noOfPoints, xs, ys);
+        }
+    }
+
+    private void align(final double[] xs, final double[] ys) {
+        // same winding order
+        if (Math.signum(signedArea(fromXs, fromYs)) * Math.signum(signedArea(xs, ys)) < 0) {
+            for (int i = 1, j = noOfPoints - 1 ; i < j ; i++, j--) {
+                swap(xs, i, j);
+                swap(ys, i, j);
+            }
+        }
+        // start at the point nearest to the start of the source
+        int    offset = 0;
+        double min    = Double.POSITIVE_INFINITY;
+        for (int i = 0 ; i < noOfPoints ; i++) {
+            final double distance2 = (xs[i] - fromXs[0]) * (xs[i] - fromXs[0]) + (ys[i] - fromYs[0]) * (ys[i] - fromYs[0]);
+            if (distance2 < min) {
+                min    = distance2;
+                offset = i;
+            }
+        }
+        if (offset > 0) {
+            rotate(xs, offset);
+            rotate(ys, offset);
+        }
+    }
+
+    private double signedArea(final double[] xs, final double[] ys) {
+        double area = 0;
+        for (int i = 0, j = noOfPoints - 1 ; i < noOfPoints ; j = i++) { area += xs[j] * ys[i] - xs[i] * ys[j]; }
+        return area * 0.5;
+    }
+
+    private static void swap(final double[] values, final int i, final int j) {
+        final double tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+    }
+
+    private static void rotate(final double[] values, final int offset) {
+        // three reversals rotate the array in place to the left by offset
+        reverse(values, 0, offset - 1);
+        reverse(values, offset, values.length - 1);
+        reverse(values, 0, values.length - 1);
+    }
+
+    private static void reverse(final double[] values, final int from, final int to) {
+        for (int i = from, j = to ; i < j ; i++, j--) { swap(values, i, j); }
+    }
+}
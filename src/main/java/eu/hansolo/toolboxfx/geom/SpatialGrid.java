@@ -0,0 +1,190 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+import java.util.Arrays;
+
+
+/**
+ * Uniform grid (spatial hash) that maps the cells covered by the bounds of
+ * an object to the id of the object. Only cells that contain objects are stored.
+ * The cells are kept in an open addressing hash table with primitive keys, emptied
+ * cells are removed by shifting back the following entries and their id lists are
+ * pooled, so moving objects around doesn't create garbage.
+ */
+class SpatialGrid {
+    private static final int       INITIAL_CAPACITY = 64;
+    private        final double    cellSize;
+    private        final double    invCellSize;
+    private              int[]     cellXs;
+    private              int[]     cellYs;
+    private              IntList[] lists;
+    private              int       mask;
+    private              int       size;
+    private              IntList[] pool;
+    private              int       poolSize;
+
+
+    // ******************** Constructors **************************************
+    SpatialGrid(final double cellSize) {
+        if (cellSize <= 0 || !Double.isFinite(cellSize)) { throw new IllegalArgumentException("cellSize must be a positive number"); }
+        this.cellSize    = cellSize;
+        this.invCellSize = 1.0 / cellSize;
+        this.cellXs      = new int[INITIAL_CAPACITY];
+        this.cellYs      = new int[INITIAL_CAPACITY];
+        this.lists       = new IntList[INITIAL_CAPACITY];
+        this.mask        = INITIAL_CAPACITY - 1;
+        this.size        = 0;
+        this.pool        = new IntList[16];
+        this.poolSize    = 0;
+    }
+
+
+    // ******************** Methods *******************************************
+    double getCellSize() { return cellSize; }
+
+    int cell(final double value) { return (int) Math.floor(value * invCellSize); }
+
+    static long noOfCells(final int minCellX, final int minCellY, final int maxCellX, final int maxCellY) {
+        return ((long) maxCellX - minCellX + 1) * ((long) maxCellY - minCellY + 1);
+    }
+
+    void insert(final int id, final double minX, final double minY, final double maxX, final double maxY) {
+        final int minCellX = cell(minX);
+        final int minCellY = cell(minY);
+        final int maxCellX = cell(maxX);
+        final int maxCellY = cell(maxY);
+        for (int cy = minCellY ; cy <= maxCellY ; cy++) {
+            for (int cx = minCellX ; cx <= maxCellX ; cx++) { insert(id, cx, cy); }
+        }
+    }
+
+    void remove(final int id, final double minX, final double minY, final double maxX, final double maxY) {
+        final int minCellX = cell(minX);
+        final int minCellY = cell(minY);
+        final int maxCellX = cell(maxX);
+        final int maxCellY = cell(maxY);
+        for (int cy = minCellY ; cy <= maxCellY ; cy++) {
+            for (int cx = minCellX ; cx <= maxCellX ; cx++) { remove(id, cx, cy); }
+        }
+    }
+
+    void insert(final int id, final int cellX, final int cellY) {
+        if ((size + 1) * 2 > lists.length) { grow(); }
+        final int slot = slot(cellX, cellY);
+        if (null == lists[slot]) {
+            cellXs[slot] = cellX;
+            cellYs[slot] = cellY;
+            lists[slot]  = poolSize > 0 ? pool[--poolSize] : new IntList(4);
+            size++;
+        }
+        lists[slot].add(id);
+    }
+
+    void remove(final int id, final int cellX, final int cellY) {
+        final int     slot = slot(cellX, cellY);
+        final IntList ids  = lists[slot];
+        if (null == ids) { return; }
+        ids.removeValue(id);
+        if (ids.isEmpty()) { delete(slot); }
+    }
+
+    /**
+     * Returns the ids stored in the cell at the given cell coordinates
+     * @param cellX x index of the cell
+     * @param cellY y index of the cell
+     * @return the ids in the cell or null if the cell is empty
+     */
+    IntList get(final int cellX, final int cellY) { return lists[slot(cellX, cellY)]; }
+
+    IntList getAt(final double x, final double y) { return get(cell(x), cell(y)); }
+
+    void clear() {
+        for (int slot = 0 ; slot < lists.length ; slot++) {
+            if (null == lists[slot]) { continue; }
+            release(lists[slot]);
+            lists[slot] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns the slot of the given cell or the empty slot where it would be inserted
+     */
+    private int slot(final int cellX, final int cellY) {
+        int slot = hash(cellX, cellY) & mask;
+        while (null != lists[slot] && (cellXs[slot] != cellX || cellYs[slot] != cellY)) { slot = (slot + 1) & mask; }
+        return slot;
+    }
+
+    /**
+     * Removes the cell in the given slot and shifts back the following entries of the probe sequence
+     */
+    private void delete(final int slot) {
+        release(lists[slot]);
+        lists[slot] = null;
+        size--;
+        int empty = slot;
+        int next  = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (null == lists[next]) { return; }
+            final int home = hash(cellXs[next], cellYs[next]) & mask;
+            // the entry can only move back if its home slot is not between the empty slot and itself
+            if (((next - home) & mask) >= ((next - empty) & mask)) {
+                cellXs[empty] = cellXs[next];
+                cellYs[empty] = cellYs[next];
+                lists[empty]  = lists[next];
+                lists[next]   = null;
+                empty         = next;
+            }
+        }
+    }
+
+    private void grow() {
+        final int[]     oldCellXs = cellXs;
+        final int[]     oldCellYs = cellYs;
+        final IntList[] oldLists  = lists;
+        final int       capacity  = oldLists.length * 2;
+        cellXs = new int[capacity];
+        cellYs = new int[capacity];
+        lists  = new IntList[capacity];
+        mask   = capacity - 1;
+        for (int i = 0 ; i < oldLists.length ; i++) {
+            if (null == oldLists[i]) { continue; }
+            final int slot = slot(oldCellXs[i], oldCellYs[i]);
+            cellXs[slot] = oldCellXs[i];
+            cellYs[slot] = oldCellYs[i];
+            lists[slot]  = oldLists[i];
+        }
+    }
+
+    private void release(final IntList ids) {
+        ids.clear();
+        if (poolSize == pool.length) { pool = Arrays.copyOf(pool, pool.length * 2); }
+        pool[poolSize++] = ids;
+    }
+
+    private static int hash(final int cellX, final int cellY) {
+        long h = cellX * 0x9E3779B97F4A7C15L + cellY * 0xC2B2AE3D27D4EB4FL;
+        h ^= (h >>> 31);
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2016-2021 Gerrit Grunwald.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.toolboxfx.geom;
+
+
+/**
+ * Solves tridiagonal systems for the x and the y coordinates in one pass (Thomas algorithm),
+ * both right hand sides share the same elimination. The cyclic variant solves systems with
+ * additional corner elements (closed curves) with the Sherman-Morrison formula, the correction
+ * vector is eliminated in the same pass. All temporary values go to the given scratch array,
+ * the solution can be written into the right hand side arrays.
+ * Row i of the matrix is sub[i], diag[i], sup[i], sub[0] and sup[n - 1] are not used.
+ */
+public final class TridiagonalSolver {
+
+    // ******************** Constructors **************************************
+    private TridiagonalSolver() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Solves the tridiagonal system for two right hand sides
+     * @param sub     sub diagonal
+     * @param diag    main diagonal
+     * @param sup     super diagonal
+     * @param rhsX    right hand side for the x coordinates
+     * @param rhsY    right hand side for the y coordinates
+     * @param outX    receives the solution for the x coordinates (may be rhsX)
+     * @param outY    receives the solution for the y coordinates (may be rhsY)
+     * @param scratch temporary values, needs at least n elements
+     * @param n       size of the system
+     */
+    public static void solve(final double[] sub, final double[] diag, final double[] sup, final double[] rhsX, final double[] rhsY,
+                             final double[] outX, final double[] outY, final double[] scratch, final int n) {
+        if (n < 1) { throw new IllegalArgumentException("n must be at least 1"); }
+        if (scratch.length < n) { throw new IllegalArgumentException("scratch needs at least " + n + " elements"); }
+        eliminate(sub, diag, sup, diag[0], diag[n - 1], rhsX, rhsY, outX, outY, scratch, 0, 0, 0, n);
+    }
+
+    /**
+     * Solves the cyclic tridiagonal system for two right hand sides
+     * @param sub     sub diagonal
+     * @param diag    main diagonal
+     * @param sup     super diagonal
+     * @param alpha   corner element in the last row and the first column
+     * @param beta    corner element in the first row and the last column
+     * @param rhsX    right hand side for the x coordinates
+     * @param rhsY    right hand side for the y coordinates
+     * @param outX    receives the solution for the x coordinates (may be rhsX)
+     * @param outY    receives the solution for the y coordinates (may be rhsY)
+     * @param scratch temporary values, needs at least 2 * n elements
+     * @param n       size of the system, at least 3
+     */
+    public static void solveCyclic(final double[] sub, final double[] diag, final double[] sup, final double alpha, final double beta,
+                                   final double[] rhsX, final double[] rhsY, final double[] outX, final double[] outY, final double[] scratch, final int n) {
+        if (n < 3) { throw new IllegalArgumentException("n must be at least 3"); }
+        if (scratch.length < 2 * n) { throw new IllegalArgumentException("scratch needs at least " + (2 * n) + " elements"); }
+        // A = A' + u * v^T with u = (gamma, 0, ..., 0, alpha) and v = (1, 0, ..., 0, beta / gamma)
+        final double gamma = -diag[0];
+        eliminate(sub, diag, sup, diag[0] - gamma, diag[n - 1] - alpha * beta / gamma, rhsX, rhsY, outX, outY, scratch, n, gamma, alpha, n);
+        final int    z       = n;
+        final double divisor = 1 + scratch[z] + beta * scratch[z + n - 1] / gamma;
+        final double factorX = (outX[0] + beta * outX[n - 1] / gamma) / divisor;
+        final double factorY = (outY[0] + beta * outY[n - 1] / gamma) / divisor;
+        for (int i = 0 ; i < n ; i++) {
+            outX[i] -= factorX * scratch[z + i];
+            outY[i] -= factorY * scratch[z + i];
+        }
+    }
+
+    /**
+     * Forward elimination and back substitution with replaced first and last diagonal element,
+     * if z > 0 the system is also solved for u = (u0, 0, ..., 0, uLast) into scratch[z...z + n - 1]
+     */
+    private static void eliminate(final double[] sub, final double[] diag, final double[] sup, final double first, final double last,
+                                  final double[] rhsX, final double[] rhsY, final double[] outX, final double[] outY,
+                                  final double[] scratch, final int z, final double u0, final double uLast, final int n) {
+        final boolean cyclic = z > 0;
+        double m = first;
+        scratch[0] = n > 1 ? sup[0] / m : 0;
+        outX[0]    = rhsX[0] / m;
+        outY[0]    = rhsY[0] / m;
+        if (cyclic) { scratch[z] = u0 / m; }
+        for (int i = 1 ; i < n ; i++) {
+            final double a = sub[i];
+            m          = (i == n - 1 ? last : diag[i]) - a * scratch[i - 1];
+            scratch[i] = i < n - 1 ? sup[i] / m : 0;
+            outX[i]    = (rhsX[i] - a * outX[i - 1]) / m;
+            outY[i]    = (rhsY[i] - a * outY[i - 1]) / m;
+            if (cyclic) { scratch[z + i] = ((i == n - 1 ? uLast : 0) - a * scratch[z + i - 1]) / m; }
+        }
+        for (int i = n - 2 ; i >= 0 ; i--) {
+            outX[i] -= scratch[i] * outX[i + 1];
+            outY[i] -= scratch[i] * outY[i + 1];
+            if (cyclic) { scratch[z + i] -= scratch[i] * scratch[z + i + 1]; }
+        }
+    }
+}